@@ -1,13 +1,17 @@
 package com.example.movie;
 
+import com.example.movie.gateway.transcoding.MovieTranscodingHandler;
+import com.example.movie.gateway.transcoding.UserTranscodingHandler;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
-import org.springframework.cloud.gateway.route.RouteLocator;
-import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
 
-@SpringBootApplication
+// Not the whole com.example.movie package: the common module's gRPC server beans are for the services only
+@SpringBootApplication(scanBasePackages = "com.example.movie.gateway")
 @EnableDiscoveryClient
 public class ApiGatewayApplication {
 
@@ -15,13 +19,16 @@ public class ApiGatewayApplication {
         SpringApplication.run(ApiGatewayApplication.class, args);
     }
 
+    // movie-service and user-service only speak gRPC, so the gateway transcodes REST/JSON itself
     @Bean
-    public RouteLocator customRouteLocator(RouteLocatorBuilder builder) {
-        return builder.routes()
-                .route("movie-service", r -> r.path("/movies/**")
-                        .uri("lb://movie-service"))
-                .route("user-service", r -> r.path("/users/**")
-                        .uri("lb://user-service"))
+    public RouterFunction<ServerResponse> transcodingRoutes(MovieTranscodingHandler movieHandler,
+                                                            UserTranscodingHandler userHandler) {
+        return RouterFunctions.route()
+                .GET("/movies/trending", movieHandler::getTrendingMovies)
+                .GET("/movies/search", movieHandler::searchMovies)
+                .GET("/movies/{id}", movieHandler::getMovie)
+                .GET("/users/{id}/activity", userHandler::getUserActivityHistory)
+                .GET("/users/{id}", userHandler::getUserProfile)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package com.example.movie.gateway.cache;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * JSON messages of a backend response, one entry for unary calls and one per streamed message otherwise.
+ */
+public record CachedResponse(List<String> messages, String etag) {
+
+    public static CachedResponse of(List<String> messages) {
+        StringBuilder body = new StringBuilder();
+        messages.forEach(message -> body.append(message).append('\n'));
+        String hash = DigestUtils.md5DigestAsHex(body.toString().getBytes(StandardCharsets.UTF_8));
+        return new CachedResponse(List.copyOf(messages), "\"" + hash + "\"");
+    }
+}
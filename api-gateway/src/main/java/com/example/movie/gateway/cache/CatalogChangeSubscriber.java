@@ -0,0 +1,109 @@
+package com.example.movie.gateway.cache;
+
+import com.example.movie.gateway.grpc.GrpcChannelRegistry;
+import com.example.movie.movieservice.proto.CatalogChange;
+import com.example.movie.movieservice.proto.MovieServiceGrpc;
+import com.example.movie.movieservice.proto.WatchCatalogChangesRequest;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a WatchCatalogChanges stream open to every movie-service instance and invalidates
+ * cached responses when a movie is added or re-rated.
+ */
+@Component
+@Slf4j
+public class CatalogChangeSubscriber {
+
+    private static final String SERVICE_ID = "movie-service";
+
+    private final GrpcChannelRegistry channelRegistry;
+    private final ResponseCache responseCache;
+    private final ResponseCacheProperties properties;
+
+    // Open watch streams keyed by instance address
+    private final Map<String, ClientCallStreamObserver<WatchCatalogChangesRequest>> watches = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    public CatalogChangeSubscriber(GrpcChannelRegistry channelRegistry, ResponseCache responseCache,
+                                   ResponseCacheProperties properties) {
+        this.channelRegistry = channelRegistry;
+        this.responseCache = responseCache;
+        this.properties = properties;
+    }
+
+    // Runs on startup and after every Eureka registry refresh so new instances are watched too
+    @EventListener({ApplicationReadyEvent.class, HeartbeatEvent.class})
+    public synchronized void watchAllInstances() {
+        if (closed || !properties.isEnabled()) {
+            return;
+        }
+        try {
+            channelRegistry.addressesOf(SERVICE_ID).forEach(this::watch);
+        } catch (IllegalStateException e) {
+            log.debug("No movie-service instances to watch: {}", e.getMessage());
+        }
+    }
+
+    private void watch(String address) {
+        if (watches.containsKey(address)) {
+            return;
+        }
+
+        MovieServiceGrpc.newStub(channelRegistry.channelForAddress(address)).watchCatalogChanges(
+                WatchCatalogChangesRequest.getDefaultInstance(),
+                new ClientResponseObserver<WatchCatalogChangesRequest, CatalogChange>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<WatchCatalogChangesRequest> requestStream) {
+                        watches.put(address, requestStream);
+                    }
+
+                    @Override
+                    public void onNext(CatalogChange change) {
+                        if (change.getChangeType() == CatalogChange.ChangeType.CATALOG_RELOADED) {
+                            responseCache.invalidateAll();
+                        } else {
+                            responseCache.invalidateMovie(change.getMovieId());
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        log.warn("Catalog change stream to {} failed: {}", address, t.getMessage());
+                        retry(address);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        retry(address);
+                    }
+                });
+        log.info("Watching catalog changes of movie-service at {}", address);
+    }
+
+    // Changes may have been missed while the stream was down, so nothing cached can be trusted
+    private void retry(String address) {
+        watches.remove(address);
+        responseCache.invalidateAll();
+        if (!closed) {
+            Mono.delay(properties.getWatchRetryDelay()).subscribe(tick -> watchAllInstances());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        watches.values().forEach(watch -> watch.cancel("Gateway shutting down", null));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.movie.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Gateway-level cache for catalog reads, keyed by route and normalized parameters.
+ * Concurrent misses on the same key share one backend call.
+ * <p>
+ * Trending lists live in their own small cache: any rating change can reorder them, so they are
+ * dropped together on every change, without walking the much larger set of cached movies.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(ResponseCacheProperties.class)
+public class ResponseCache {
+
+    private static final String MOVIE_PREFIX = "movie:";
+    private static final String TRENDING_PREFIX = "trending:";
+
+    private final ResponseCacheProperties properties;
+    private final AsyncCache<String, CachedResponse> movies;
+    private final AsyncCache<String, CachedResponse> trending;
+
+    public ResponseCache(ResponseCacheProperties properties) {
+        this.properties = properties;
+        this.movies = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .buildAsync();
+        this.trending = Caffeine.newBuilder()
+                .maximumSize(properties.getTrendingMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .buildAsync();
+    }
+
+    public static String movieKey(int movieId) {
+        return MOVIE_PREFIX + movieId;
+    }
+
+    public static String trendingKey(int limit, String genre) {
+        return TRENDING_PREFIX + limit + ":" + genre.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Mono<CachedResponse> get(String key, Supplier<Mono<CachedResponse>> loader) {
+        if (!properties.isEnabled()) {
+            return loader.get();
+        }
+        // Cancellation is suppressed because the pending load may be shared with other requests
+        AsyncCache<String, CachedResponse> cache = key.startsWith(TRENDING_PREFIX) ? trending : movies;
+        return Mono.fromFuture(() -> cache.get(key, (k, executor) -> loader.get().toFuture()), true);
+    }
+
+    // A changed movie can appear in any trending list, so those are dropped as well
+    public void invalidateMovie(int movieId) {
+        movies.synchronous().invalidate(movieKey(movieId));
+        trending.synchronous().invalidateAll();
+        log.debug("Invalidated cached responses for movie {}", movieId);
+    }
+
+    public void invalidateAll() {
+        movies.synchronous().invalidateAll();
+        trending.synchronous().invalidateAll();
+        log.info("Invalidated all cached responses");
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.movie.gateway.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class ResponseCacheProperties {
+
+    private boolean enabled = true;
+
+    // Maximum number of cached movie responses
+    private long maximumSize = 10_000;
+
+    // Maximum number of cached trending lists (one per limit and genre), kept apart from movies
+    private long trendingMaximumSize = 500;
+
+    // Upper bound on staleness if an invalidation is ever missed
+    private Duration ttl = Duration.ofMinutes(5);
+
+    // Delay before re-opening a catalog change stream that closed
+    private Duration watchRetryDelay = Duration.ofSeconds(5);
+}
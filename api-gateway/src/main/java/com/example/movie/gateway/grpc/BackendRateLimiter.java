@@ -0,0 +1,38 @@
+package com.example.movie.gateway.grpc;
+
+import io.grpc.Status;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One token bucket per backend service so a burst of gateway traffic cannot overrun it.
+ * Only calls that actually reach a backend take a token, cache hits do not.
+ */
+@Component
+public class BackendRateLimiter {
+
+    private final GrpcBackendProperties properties;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public BackendRateLimiter(GrpcBackendProperties properties) {
+        this.properties = properties;
+    }
+
+    // Throws RESOURCE_EXHAUSTED, which the gateway answers with 429
+    public void acquire(String serviceId) {
+        GrpcBackendProperties.RateLimit rateLimit = properties.getRateLimits().get(serviceId);
+        if (rateLimit == null) {
+            return;
+        }
+
+        TokenBucket bucket = buckets.computeIfAbsent(serviceId,
+                k -> new TokenBucket(rateLimit.getPermitsPerSecond(), rateLimit.getBurst()));
+        if (!bucket.tryConsume()) {
+            throw Status.RESOURCE_EXHAUSTED
+                    .withDescription("Rate limit for " + serviceId + " exceeded")
+                    .asRuntimeException();
+        }
+    }
+}
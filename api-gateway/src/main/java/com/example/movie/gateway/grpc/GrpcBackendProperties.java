@@ -0,0 +1,34 @@
+package com.example.movie.gateway.grpc;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.grpc")
+public class GrpcBackendProperties {
+
+    // Deadline applied to every unary call the gateway makes to a backend
+    private Duration deadline = Duration.ofSeconds(10);
+
+    // Server streams may run long, so they fail only when no message arrives for this long
+    private Duration streamIdleTimeout = Duration.ofSeconds(10);
+
+    // Upper bound on a whole server stream, however steadily it delivers
+    private Duration streamDeadline = Duration.ofMinutes(5);
+
+    // host:port used for a service when Eureka has no instances of it
+    private Map<String, String> fallbackAddresses = new HashMap<>();
+
+    // Token bucket per service id, services without an entry are not rate limited
+    private Map<String, RateLimit> rateLimits = new HashMap<>();
+
+    @Data
+    public static class RateLimit {
+        private double permitsPerSecond = 500;
+        private double burst = 1000;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.movie.gateway.grpc;
+
+import com.example.movie.common.sharding.ConsistentHashRing;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps one long-lived HTTP/2 channel per backend instance discovered through Eureka.
+ * Every gateway request to that instance is multiplexed over the same connection.
+ * Requests for a sharded key are routed over the same consistent-hash ring the backends use.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(GrpcBackendProperties.class)
+public class GrpcChannelRegistry {
+
+    private static final String GRPC_PORT_METADATA = "gRPC.port";
+    private static final String VIRTUAL_NODES_METADATA = "shard.virtual-nodes";
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    // Ring of addresses built from one view of the registry, reused until the view changes
+    private record Ring(List<String> members, ConsistentHashRing<String> ring) {
+    }
+
+    private final DiscoveryClient discoveryClient;
+    private final GrpcBackendProperties properties;
+
+    // Keyed by host:port
+    private final Map<String, ManagedChannel> channels = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> roundRobin = new ConcurrentHashMap<>();
+    private final Set<String> knownServices = ConcurrentHashMap.newKeySet();
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    public GrpcChannelRegistry(DiscoveryClient discoveryClient, GrpcBackendProperties properties) {
+        this.discoveryClient = discoveryClient;
+        this.properties = properties;
+    }
+
+    // Picks an instance of the service round-robin and returns its channel
+    public ManagedChannel channelFor(String serviceId) {
+        List<String> addresses = addressesOf(serviceId);
+        int next = roundRobin.computeIfAbsent(serviceId, k -> new AtomicInteger()).getAndIncrement();
+        return channelForAddress(addresses.get(Math.floorMod(next, addresses.size())));
+    }
+
+    // Channel to the instance owning the key on the service's hash ring
+    public ManagedChannel channelForKey(String serviceId, int key) {
+        knownServices.add(serviceId);
+        List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
+        if (instances.isEmpty()) {
+            return channelFor(serviceId);
+        }
+
+        List<String> members = instances.stream()
+                .map(instance -> instance.getInstanceId() + "=" + virtualNodes(instance) + "@" + instance.getHost() + ":" + grpcPort(instance))
+                .sorted()
+                .toList();
+        Ring current = rings.get(serviceId);
+        if (current == null || !current.members().equals(members)) {
+            Map<String, String> nodes = new HashMap<>();
+            Map<String, Integer> virtualNodes = new HashMap<>();
+            for (ServiceInstance instance : instances) {
+                nodes.put(instance.getInstanceId(), instance.getHost() + ":" + grpcPort(instance));
+                virtualNodes.put(instance.getInstanceId(), virtualNodes(instance));
+            }
+            current = new Ring(members, ConsistentHashRing.of(nodes, virtualNodes));
+            rings.put(serviceId, current);
+        }
+        return channelForAddress(current.ring().nodeFor(key));
+    }
+
+    public ManagedChannel channelForAddress(String address) {
+        return channels.computeIfAbsent(address, this::createChannel);
+    }
+
+    public List<String> addressesOf(String serviceId) {
+        knownServices.add(serviceId);
+        List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
+
+        if (instances.isEmpty()) {
+            String fallback = properties.getFallbackAddresses().get(serviceId);
+            if (fallback == null) {
+                throw new IllegalStateException("No instances of " + serviceId + " found in Eureka");
+            }
+            return List.of(fallback);
+        }
+
+        return instances.stream()
+                .map(instance -> instance.getHost() + ":" + grpcPort(instance))
+                .toList();
+    }
+
+    private int grpcPort(ServiceInstance instance) {
+        String grpcPort = instance.getMetadata().get(GRPC_PORT_METADATA);
+        return grpcPort != null ? Integer.parseInt(grpcPort) : instance.getPort();
+    }
+
+    private int virtualNodes(ServiceInstance instance) {
+        String count = instance.getMetadata().get(VIRTUAL_NODES_METADATA);
+        return count != null ? Integer.parseInt(count) : DEFAULT_VIRTUAL_NODES;
+    }
+
+    private ManagedChannel createChannel(String address) {
+        log.info("Creating gRPC channel to {}", address);
+        int separator = address.lastIndexOf(':');
+        return NettyChannelBuilder.forAddress(address.substring(0, separator),
+                        Integer.parseInt(address.substring(separator + 1)))
+                .usePlaintext()
+                .keepAliveTime(30, TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(true)
+                .build();
+    }
+
+    // Eureka publishes a heartbeat each time it refreshes its registry, drop channels to instances that left
+    @EventListener(HeartbeatEvent.class)
+    public void pruneChannels() {
+        Set<String> live = new HashSet<>();
+        for (String serviceId : knownServices) {
+            try {
+                live.addAll(addressesOf(serviceId));
+            } catch (IllegalStateException e) {
+                // Nothing registered right now, its channels are stale as well
+            }
+        }
+
+        channels.entrySet().removeIf(entry -> {
+            if (live.contains(entry.getKey())) {
+                return false;
+            }
+            log.info("Closing gRPC channel to {} which is no longer registered", entry.getKey());
+            entry.getValue().shutdown();
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        channels.forEach((address, channel) -> {
+            log.info("Shutting down gRPC channel to {}", address);
+            try {
+                channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                log.warn("Error shutting down gRPC channel: {}", e.getMessage());
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.movie.gateway.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Bridges async gRPC stub calls to Reactor so the gateway never blocks its event loop.
+ * Cancelling the subscription cancels the gRPC call, and streaming calls only pull as
+ * many messages from the backend as the HTTP response has asked for.
+ * <p>
+ * Server streams are bounded by an idle timeout rather than the unary deadline: a stream that
+ * keeps delivering may take as long as it needs, one that goes quiet is cancelled.
+ */
+public final class ReactiveGrpc {
+
+    private ReactiveGrpc() {
+    }
+
+    public static <Req, Resp> Mono<Resp> unary(Req request, BiConsumer<Req, StreamObserver<Resp>> call) {
+        return Mono.create(sink -> call.accept(request, new ClientResponseObserver<Req, Resp>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<Req> requestStream) {
+                sink.onCancel(() -> requestStream.cancel("Cancelled by gateway client", null));
+            }
+
+            @Override
+            public void onNext(Resp value) {
+                sink.success(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                sink.error(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                sink.success();
+            }
+        }));
+    }
+
+    public static <Req, Resp> Flux<Resp> serverStreaming(Req request, BiConsumer<Req, StreamObserver<Resp>> call,
+                                                         Duration idleTimeout) {
+        Flux<Resp> stream = Flux.create(sink -> {
+            AtomicReference<ClientCallStreamObserver<Req>> requestStream = new AtomicReference<>();
+
+            call.accept(request, new ClientResponseObserver<Req, Resp>() {
+                @Override
+                public void beforeStart(ClientCallStreamObserver<Req> stream) {
+                    stream.disableAutoRequestWithInitial(0);
+                    requestStream.set(stream);
+                }
+
+                @Override
+                public void onNext(Resp value) {
+                    sink.next(value);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    sink.error(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    sink.complete();
+                }
+            });
+
+            // The call has started by now, so demand can be forwarded to it
+            sink.onRequest(n -> requestStream.get().request((int) Math.min(n, Integer.MAX_VALUE)));
+            sink.onCancel(() -> requestStream.get().cancel("Cancelled by gateway client", null));
+        });
+
+        // Timing out cancels the subscription and with it the gRPC call
+        return stream.timeout(idleTimeout, Flux.error(() -> Status.DEADLINE_EXCEEDED
+                .withDescription("No message from backend for " + idleTimeout.toMillis() + " ms")
+                .asRuntimeException()));
+    }
+}
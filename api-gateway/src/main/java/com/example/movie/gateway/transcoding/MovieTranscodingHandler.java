@@ -0,0 +1,150 @@
+package com.example.movie.gateway.transcoding;
+
+import com.example.movie.gateway.cache.CachedResponse;
+import com.example.movie.gateway.cache.ResponseCache;
+import com.example.movie.gateway.grpc.BackendRateLimiter;
+import com.example.movie.gateway.grpc.GrpcBackendProperties;
+import com.example.movie.gateway.grpc.GrpcChannelRegistry;
+import com.example.movie.gateway.grpc.ReactiveGrpc;
+import com.example.movie.movieservice.proto.MovieRequest;
+import com.example.movie.movieservice.proto.MovieResponse;
+import com.example.movie.movieservice.proto.MovieServiceGrpc;
+import com.example.movie.movieservice.proto.SearchMoviesRequest;
+import com.example.movie.movieservice.proto.TrendingMoviesRequest;
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Component
+@RequiredArgsConstructor
+public class MovieTranscodingHandler {
+
+    private static final String SERVICE_ID = "movie-service";
+    private static final int DEFAULT_TRENDING_LIMIT = 10; // Same default as movie-service
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100; // Same cap as movie-service
+
+    private static final Comparator<MovieResponse> HIGHEST_SCORE_FIRST =
+            Comparator.comparingDouble(MovieResponse::getScore).reversed().thenComparingInt(MovieResponse::getMovieId);
+
+    private final GrpcChannelRegistry channelRegistry;
+    private final BackendRateLimiter rateLimiter;
+    private final GrpcBackendProperties properties;
+    private final ProtoJsonResponses responses;
+    private final ResponseCache responseCache;
+
+    // GET /movies/{id} -> MovieService.GetMovie on the shard owning the movie
+    public Mono<ServerResponse> getMovie(ServerRequest request) {
+        Integer movieId = TranscodingParams.pathInt(request, "id");
+        if (movieId == null) {
+            return responses.error(HttpStatus.BAD_REQUEST, "Movie id must be a number");
+        }
+
+        MovieRequest grpcRequest = MovieRequest.newBuilder().setMovieId(movieId).build();
+        return responses.cached(request, responseCache.get(ResponseCache.movieKey(movieId),
+                () -> Mono.defer(() -> ReactiveGrpc.unary(grpcRequest,
+                        unaryStub(channelRegistry.channelForKey(SERVICE_ID, movieId))::getMovie))
+                        .map(movie -> CachedResponse.of(List.of(responses.toJson(movie))))), false);
+    }
+
+    // GET /movies/trending?limit=&genre=&mode= -> MovieService.GetTrendingMovies on every shard, merged by score
+    public Mono<ServerResponse> getTrendingMovies(ServerRequest request) {
+        TrendingMoviesRequest.TrendingMode mode = trendingMode(request);
+        if (mode == null) {
+            return responses.error(HttpStatus.BAD_REQUEST, "Mode must be all_time_rating or trending_now");
+        }
+
+        int limit = TranscodingParams.queryInt(request, "limit", 0);
+        TrendingMoviesRequest grpcRequest = TrendingMoviesRequest.newBuilder()
+                .setLimit(limit > 0 ? limit : DEFAULT_TRENDING_LIMIT)
+                .setGenre(request.queryParam("genre").orElse(""))
+                .setMode(mode)
+                .build();
+
+        // Trending-now moves with every view and no catalog change event announces that, so it is not cached
+        if (mode == TrendingMoviesRequest.TrendingMode.TRENDING_NOW) {
+            return responses.serverStreaming(request, Flux.defer(() ->
+                    allShards(grpcRequest, grpcRequest.getLimit(), stub -> stub::getTrendingMovies)));
+        }
+
+        // Trending lists are short, so the whole stream is collected once and replayed from the cache
+        return responses.cached(request, responseCache.get(
+                ResponseCache.trendingKey(grpcRequest.getLimit(), grpcRequest.getGenre()),
+                () -> Flux.defer(() -> allShards(grpcRequest, grpcRequest.getLimit(), stub -> stub::getTrendingMovies))
+                        .map(responses::toJson)
+                        .collectList()
+                        .map(CachedResponse::of)), true);
+    }
+
+    // GET /movies/search?q=&limit= -> MovieService.SearchMovies on every shard, not cached since type-ahead queries rarely repeat
+    public Mono<ServerResponse> searchMovies(ServerRequest request) {
+        String query = request.queryParam("q").orElse("");
+        if (query.isBlank()) {
+            return responses.error(HttpStatus.BAD_REQUEST, "Query parameter q is required");
+        }
+
+        int limit = TranscodingParams.queryInt(request, "limit", 0);
+        SearchMoviesRequest grpcRequest = SearchMoviesRequest.newBuilder()
+                .setQuery(query)
+                .setLimit(limit > 0 ? Math.min(limit, MAX_SEARCH_LIMIT) : DEFAULT_SEARCH_LIMIT)
+                .build();
+        return responses.serverStreaming(request, Flux.defer(() ->
+                allShards(grpcRequest, grpcRequest.getLimit(), stub -> stub::searchMovies)));
+    }
+
+    // Each shard returns its own best rows; movies held by several replicas are kept once, at their best score
+    private <Req> Flux<MovieResponse> allShards(Req request, int limit,
+                                                Function<MovieServiceGrpc.MovieServiceStub, BiConsumer<Req, StreamObserver<MovieResponse>>> method) {
+        return Flux.fromIterable(channelRegistry.addressesOf(SERVICE_ID))
+                .flatMap(address -> streaming(request, method.apply(streamingStub(channelRegistry.channelForAddress(address)))))
+                .collect(Collectors.toMap(MovieResponse::getMovieId, Function.identity(),
+                        (a, b) -> HIGHEST_SCORE_FIRST.compare(a, b) <= 0 ? a : b))
+                .flatMapIterable(byMovie -> byMovie.values().stream().sorted(HIGHEST_SCORE_FIRST).limit(limit).toList());
+    }
+
+    // Returns null for an unknown mode, a missing one means the all-time list
+    private static TrendingMoviesRequest.TrendingMode trendingMode(ServerRequest request) {
+        String mode = request.queryParam("mode").orElse("").trim();
+        if (mode.isEmpty()) {
+            return TrendingMoviesRequest.TrendingMode.ALL_TIME_RATING;
+        }
+        try {
+            TrendingMoviesRequest.TrendingMode parsed = TrendingMoviesRequest.TrendingMode.valueOf(mode.toUpperCase(Locale.ROOT));
+            return parsed != TrendingMoviesRequest.TrendingMode.UNRECOGNIZED ? parsed : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Called lazily inside the reactive chain so rate limiting and discovery failures become error responses
+    private MovieServiceGrpc.MovieServiceStub unaryStub(ManagedChannel channel) {
+        return stub(channel).withDeadlineAfter(properties.getDeadline().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private MovieServiceGrpc.MovieServiceStub streamingStub(ManagedChannel channel) {
+        return stub(channel).withDeadlineAfter(properties.getStreamDeadline().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private MovieServiceGrpc.MovieServiceStub stub(ManagedChannel channel) {
+        rateLimiter.acquire(SERVICE_ID);
+        return MovieServiceGrpc.newStub(channel);
+    }
+
+    private <Req, Resp> Flux<Resp> streaming(Req request, BiConsumer<Req, StreamObserver<Resp>> call) {
+        return ReactiveGrpc.serverStreaming(request, call, properties.getStreamIdleTimeout());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.movie.gateway.transcoding;
+
+import com.example.movie.gateway.cache.CachedResponse;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Turns gRPC results into HTTP responses. JSON is produced by JsonFormat, which walks the
+ * compiled proto descriptors rather than reflecting over the generated classes.
+ */
+@Component
+@Slf4j
+public class ProtoJsonResponses {
+
+    private final JsonFormat.Printer printer = JsonFormat.printer()
+            .omittingInsignificantWhitespace()
+            .alwaysPrintFieldsWithNoPresence();
+
+    public String toJson(MessageOrBuilder message) {
+        try {
+            return printer.print(message);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalStateException("Could not convert " + message.getClass().getSimpleName() + " to JSON", e);
+        }
+    }
+
+    public Mono<ServerResponse> unary(Mono<? extends MessageOrBuilder> result) {
+        return result.map(this::toJson)
+                .flatMap(json -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(json))
+                .switchIfEmpty(Mono.defer(() -> error(HttpStatus.NOT_FOUND, "Empty response from backend")))
+                .onErrorResume(this::fromGrpcError);
+    }
+
+    // Streams as server-sent events when the client asks for them, newline-delimited JSON otherwise.
+    // The status is only committed with the first element, so a call that fails before it (rate limited,
+    // no instance, rejected by the backend) gets the same error response as a unary call; after that the
+    // 200 is on the wire and a failure can only cut the body short.
+    public Mono<ServerResponse> serverStreaming(ServerRequest request, Flux<? extends MessageOrBuilder> result) {
+        Flux<String> json = result.map(this::toJson)
+                .doOnError(t -> log.warn("Backend stream failed: {}", t.getMessage()));
+        // Not cancelling the source when the single response completes keeps it alive for the body
+        return json.switchOnFirst((first, all) -> first.isOnError()
+                        ? fromGrpcError(first.getThrowable())
+                        : streamBody(request, ServerResponse.ok(), all), false)
+                .singleOrEmpty();
+    }
+
+    // Serves a cached response, answering 304 when the client already holds the same ETag
+    public Mono<ServerResponse> cached(ServerRequest request, Mono<CachedResponse> result, boolean streaming) {
+        return result.flatMap(response -> {
+                    if (request.headers().asHttpHeaders().getIfNoneMatch().stream()
+                            .anyMatch(tag -> tag.equals(response.etag()) || tag.equals("*"))) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(response.etag()).build();
+                    }
+
+                    ServerResponse.BodyBuilder builder = ServerResponse.ok()
+                            .eTag(response.etag())
+                            .cacheControl(CacheControl.noCache());
+                    if (streaming) {
+                        return streamBody(request, builder, Flux.fromIterable(response.messages()));
+                    }
+                    return builder.contentType(MediaType.APPLICATION_JSON).bodyValue(response.messages().get(0));
+                })
+                .switchIfEmpty(Mono.defer(() -> error(HttpStatus.NOT_FOUND, "Empty response from backend")))
+                .onErrorResume(this::fromGrpcError);
+    }
+
+    private Mono<ServerResponse> streamBody(ServerRequest request, ServerResponse.BodyBuilder builder, Flux<String> json) {
+        if (request.headers().accept().stream().anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype)) {
+            return builder.contentType(MediaType.TEXT_EVENT_STREAM)
+                    .body(json.map(data -> ServerSentEvent.builder(data).build()), ServerSentEvent.class);
+        }
+
+        return builder.contentType(MediaType.APPLICATION_NDJSON)
+                .body(json.map(data -> data + "\n"), String.class);
+    }
+
+    public Mono<ServerResponse> error(HttpStatus status, String message) {
+        return ServerResponse.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("status", status.value(), "message", message));
+    }
+
+    private Mono<ServerResponse> fromGrpcError(Throwable t) {
+        Status status = Status.fromThrowable(t);
+        String message = status.getDescription() != null ? status.getDescription() : status.getCode().name();
+        return error(toHttpStatus(status.getCode()), message);
+    }
+
+    static HttpStatus toHttpStatus(Status.Code code) {
+        return switch (code) {
+            case OK -> HttpStatus.OK;
+            case INVALID_ARGUMENT, OUT_OF_RANGE, FAILED_PRECONDITION -> HttpStatus.BAD_REQUEST;
+            case NOT_FOUND -> HttpStatus.NOT_FOUND;
+            case ALREADY_EXISTS, ABORTED -> HttpStatus.CONFLICT;
+            case PERMISSION_DENIED -> HttpStatus.FORBIDDEN;
+            case UNAUTHENTICATED -> HttpStatus.UNAUTHORIZED;
+            case RESOURCE_EXHAUSTED -> HttpStatus.TOO_MANY_REQUESTS;
+            case UNIMPLEMENTED -> HttpStatus.NOT_IMPLEMENTED;
+            case UNAVAILABLE -> HttpStatus.SERVICE_UNAVAILABLE;
+            case DEADLINE_EXCEEDED -> HttpStatus.GATEWAY_TIMEOUT;
+            case CANCELLED -> HttpStatus.REQUEST_TIMEOUT;
+            default -> HttpStatus.BAD_GATEWAY;
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.movie.gateway.transcoding;
+
+import org.springframework.web.reactive.function.server.ServerRequest;
+
+final class TranscodingParams {
+
+    private TranscodingParams() {
+    }
+
+    // Returns null when the path variable is not a number
+    static Integer pathInt(ServerRequest request, String name) {
+        try {
+            return Integer.parseInt(request.pathVariable(name));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Missing or malformed query parameters fall back to the default, like proto3 unset fields
+    static int queryInt(ServerRequest request, String name, int defaultValue) {
+        return request.queryParam(name)
+                .map(value -> {
+                    try {
+                        return Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        return defaultValue;
+                    }
+                })
+                .orElse(defaultValue);
+    }
+
+    static long queryLong(ServerRequest request, String name, long defaultValue) {
+        return request.queryParam(name)
+                .map(value -> {
+                    try {
+                        return Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        return defaultValue;
+                    }
+                })
+                .orElse(defaultValue);
+    }
+}
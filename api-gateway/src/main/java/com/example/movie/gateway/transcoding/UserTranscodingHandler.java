@@ -0,0 +1,76 @@
+package com.example.movie.gateway.transcoding;
+
+import com.example.movie.gateway.grpc.BackendRateLimiter;
+import com.example.movie.gateway.grpc.GrpcBackendProperties;
+import com.example.movie.gateway.grpc.GrpcChannelRegistry;
+import com.example.movie.gateway.grpc.ReactiveGrpc;
+import com.example.movie.userservice.proto.UserHistoryRequest;
+import com.example.movie.userservice.proto.UserRequest;
+import com.example.movie.userservice.proto.UserServiceGrpc;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+@Component
+@RequiredArgsConstructor
+public class UserTranscodingHandler {
+
+    private static final String SERVICE_ID = "user-service";
+
+    private final GrpcChannelRegistry channelRegistry;
+    private final BackendRateLimiter rateLimiter;
+    private final GrpcBackendProperties properties;
+    private final ProtoJsonResponses responses;
+
+    // GET /users/{id} -> UserService.GetUserProfile
+    public Mono<ServerResponse> getUserProfile(ServerRequest request) {
+        Integer userId = TranscodingParams.pathInt(request, "id");
+        if (userId == null) {
+            return responses.error(HttpStatus.BAD_REQUEST, "User id must be a number");
+        }
+
+        UserRequest grpcRequest = UserRequest.newBuilder().setUserId(userId).build();
+        return responses.unary(Mono.defer(() -> ReactiveGrpc.unary(grpcRequest, unaryStub()::getUserProfile)));
+    }
+
+    // GET /users/{id}/activity?limit=&since= -> UserService.GetUserActivityHistory
+    public Mono<ServerResponse> getUserActivityHistory(ServerRequest request) {
+        Integer userId = TranscodingParams.pathInt(request, "id");
+        if (userId == null) {
+            return responses.error(HttpStatus.BAD_REQUEST, "User id must be a number");
+        }
+
+        UserHistoryRequest grpcRequest = UserHistoryRequest.newBuilder()
+                .setUserId(userId)
+                .setLimit(TranscodingParams.queryInt(request, "limit", 20))
+                .setSinceTimestamp(TranscodingParams.queryLong(request, "since", 0L))
+                .build();
+        return responses.serverStreaming(request, Flux.defer(() -> streaming(grpcRequest, streamingStub()::getUserActivityHistory)));
+    }
+
+    // Called lazily inside the reactive chain so rate limiting and discovery failures become error responses
+    private UserServiceGrpc.UserServiceStub unaryStub() {
+        return stub().withDeadlineAfter(properties.getDeadline().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private UserServiceGrpc.UserServiceStub streamingStub() {
+        return stub().withDeadlineAfter(properties.getStreamDeadline().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private UserServiceGrpc.UserServiceStub stub() {
+        rateLimiter.acquire(SERVICE_ID);
+        return UserServiceGrpc.newStub(channelRegistry.channelFor(SERVICE_ID));
+    }
+
+    private <Req, Resp> Flux<Resp> streaming(Req request, BiConsumer<Req, StreamObserver<Resp>> call) {
+        return ReactiveGrpc.serverStreaming(request, call, properties.getStreamIdleTimeout());
+    }
+}
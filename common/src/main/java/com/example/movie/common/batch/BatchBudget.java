@@ -0,0 +1,30 @@
+package com.example.movie.common.batch;
+
+/**
+ * Byte budget for the batches of one stream. The first batch is small so the client gets rows
+ * quickly, each following one doubles until the requested maximum.
+ */
+public class BatchBudget {
+
+    private static final int INITIAL_BYTES = 4 * 1024;
+    private static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
+    // Well below the 4 MB default max inbound message size of gRPC clients
+    private static final int HARD_MAX_BYTES = 1024 * 1024;
+
+    private final int maxBytes;
+    private int currentBytes;
+
+    public BatchBudget(int requestedMaxBytes) {
+        this.maxBytes = requestedMaxBytes > 0 ? Math.min(requestedMaxBytes, HARD_MAX_BYTES) : DEFAULT_MAX_BYTES;
+        this.currentBytes = Math.min(INITIAL_BYTES, maxBytes);
+    }
+
+    public boolean isFull(int batchBytes) {
+        return batchBytes >= currentBytes;
+    }
+
+    public void grow() {
+        currentBytes = Math.min(currentBytes * 2, maxBytes);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.movie.common.batch;
+
+import com.google.protobuf.CodedOutputStream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-stream dictionary for strings that repeat across rows. Each distinct string is sent once,
+ * in the new_strings of the first batch that uses it, and rows refer to it by index after that.
+ * Not thread-safe, one instance per call.
+ */
+public class StringDictionary {
+
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<String> unsent = new ArrayList<>();
+    private int unsentBytes;
+
+    public int ref(String value) {
+        Integer index = indices.get(value);
+        if (index == null) {
+            index = indices.size();
+            indices.put(value, index);
+            unsent.add(value);
+            unsentBytes += CodedOutputStream.computeStringSize(1, value);
+        }
+        return index;
+    }
+
+    // Encoded size of the strings the next batch has to carry
+    public int unsentBytes() {
+        return unsentBytes;
+    }
+
+    public List<String> drainUnsent() {
+        List<String> drained = new ArrayList<>(unsent);
+        unsent.clear();
+        unsentBytes = 0;
+        return drained;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.movie.common.config;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits calls onto the bounded handler pool and closes the ones that find it full with
+ * RESOURCE_EXHAUSTED. The pool is chosen per call on the transport thread, before any handler code
+ * runs; a call that is not admitted stays on the transport thread just long enough for
+ * {@link #interceptCall} to close it. An admitted call's later events (messages, half-close) can
+ * still find the pool full; the call is then closed the same way rather than run on the transport
+ * thread, where a blocking handler would stall every call on that event loop.
+ */
+@Slf4j
+public class CallAdmission implements ServerCallExecutorSupplier, ServerInterceptor {
+
+    // Set by the executor supplier, never trusted from the client
+    private static final Metadata.Key<String> REJECTED =
+            Metadata.Key.of("x-call-admission-rejected", Metadata.ASCII_STRING_MARSHALLER);
+
+    private volatile ThreadPoolExecutor pool;
+
+    void admitTo(ThreadPoolExecutor pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public <ReqT> Executor getExecutor(ServerCall<ReqT, ?> call, Metadata headers) {
+        headers.discardAll(REJECTED);
+        ThreadPoolExecutor current = pool;
+        if (current == null) {
+            return null;
+        }
+        // The queue only fills once the pool has grown to its maximum, see GrpcServerExecutorConfig
+        if (current.getQueue().remainingCapacity() > 0) {
+            return new AdmittedCall(current, call);
+        }
+        headers.put(REJECTED, "queue-full");
+        return null;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (pool == null || !headers.containsKey(REJECTED)) {
+            return next.startCall(call, headers);
+        }
+        log.debug("Rejecting {}: handler pool and queue are full", call.getMethodDescriptor().getFullMethodName());
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription("Server handler pool is saturated"), new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+
+    /**
+     * Runs one call's tasks on the pool. gRPC hands a call's tasks over one at a time and only when
+     * none of them is running, so closing the call when the pool turns a task away does not race the
+     * handler. Tasks after that belong to a closed call and are dropped.
+     */
+    private static final class AdmittedCall implements Executor {
+
+        private final ThreadPoolExecutor pool;
+        private final ServerCall<?, ?> call;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        AdmittedCall(ThreadPoolExecutor pool, ServerCall<?, ?> call) {
+            this.pool = pool;
+            this.call = call;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (closed.get()) {
+                return;
+            }
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                if (closed.compareAndSet(false, true) && !pool.isShutdown()) {
+                    log.debug("Closing {}: handler pool and queue are full", call.getMethodDescriptor().getFullMethodName());
+                    call.close(Status.RESOURCE_EXHAUSTED.withDescription("Server handler pool is saturated"), new Metadata());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.movie.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.grpc.execution")
+public class GrpcExecutionProperties {
+
+    public enum Mode {
+        VIRTUAL,  // One virtual thread per call (falls back to BOUNDED below Java 21)
+        BOUNDED,  // Fixed platform pool with a bounded queue
+        DIRECT    // Run handlers on the transport thread; only for handlers that never block
+    }
+
+    private Mode mode = Mode.BOUNDED;
+
+    // Settings for BOUNDED mode (and the VIRTUAL fallback)
+    private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+    private int maxPoolSize = Runtime.getRuntime().availableProcessors() * 8;
+    private int queueCapacity = 1000;
+    private long keepAliveSeconds = 60;
+
+    // Netty transport threads, 0 keeps the gRPC defaults
+    private int bossThreads = 0;
+    private int workerThreads = 0;
+}
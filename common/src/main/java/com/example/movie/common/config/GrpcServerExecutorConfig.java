@@ -0,0 +1,199 @@
+package com.example.movie.common.config;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+import org.springframework.grpc.server.ServerBuilderCustomizer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+@Slf4j
+@EnableConfigurationProperties(GrpcExecutionProperties.class)
+public class GrpcServerExecutorConfig {
+
+    private final GrpcExecutionProperties properties;
+
+    private ExecutorService callExecutor;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    public GrpcServerExecutorConfig(GrpcExecutionProperties properties) {
+        this.properties = properties;
+    }
+
+    // Runs first, so calls the saturated pool turned away never reach the other interceptors
+    @Bean
+    @GlobalServerInterceptor
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public CallAdmission callAdmission() {
+        return new CallAdmission();
+    }
+
+    @Bean
+    public ServerBuilderCustomizer<NettyServerBuilder> grpcExecutionCustomizer(CallAdmission callAdmission) {
+        return builder -> {
+            switch (properties.getMode()) {
+                case DIRECT -> {
+                    log.info("gRPC handlers will run directly on the transport threads");
+                    builder.directExecutor();
+                }
+                case VIRTUAL -> {
+                    ExecutorService virtual = createVirtualExecutor();
+                    if (virtual != null) {
+                        builder.executor(callExecutor = virtual);
+                    } else {
+                        useBoundedExecutor(builder, callAdmission);
+                    }
+                }
+                default -> useBoundedExecutor(builder, callAdmission);
+            }
+
+            if (properties.getBossThreads() > 0 || properties.getWorkerThreads() > 0) {
+                // Netty requires the boss group, worker group and channel type to be set together
+                bossGroup = new NioEventLoopGroup(Math.max(properties.getBossThreads(), 1),
+                        new DefaultThreadFactory("grpc-boss", true));
+                workerGroup = new NioEventLoopGroup(Math.max(properties.getWorkerThreads(), 0),
+                        new DefaultThreadFactory("grpc-worker", true));
+                builder.bossEventLoopGroup(bossGroup)
+                        .workerEventLoopGroup(workerGroup)
+                        .channelType(NioServerSocketChannel.class);
+                log.info("gRPC event loops configured with {} boss and {} worker threads",
+                        properties.getBossThreads(), properties.getWorkerThreads());
+            }
+        };
+    }
+
+    // Calls are admitted on the transport thread and only then handed to the pool, see CallAdmission
+    private void useBoundedExecutor(NettyServerBuilder builder, CallAdmission callAdmission) {
+        ThreadPoolExecutor executor = createBoundedExecutor();
+        callExecutor = executor;
+        callAdmission.admitTo(executor);
+        builder.directExecutor().callExecutor(callAdmission);
+    }
+
+    private ThreadPoolExecutor createBoundedExecutor() {
+        log.info("gRPC handlers will run on a bounded pool (core: {}, max: {}, queue: {})",
+                properties.getCorePoolSize(), properties.getMaxPoolSize(), properties.getQueueCapacity());
+
+        AtomicInteger threadCount = new AtomicInteger(1);
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "grpc-call-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        GrowFirstQueue queue = new GrowFirstQueue(properties.getQueueCapacity());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                properties.getCorePoolSize(),
+                Math.max(properties.getMaxPoolSize(), properties.getCorePoolSize()),
+                properties.getKeepAliveSeconds(), TimeUnit.SECONDS,
+                queue,
+                threadFactory,
+                (task, pool) -> {
+                    // Lost a race with another thread growing the pool: queue it after all. Running it here
+                    // instead would block the transport thread, so past that CallAdmission closes the call.
+                    if (pool.isShutdown() || !queue.forceOffer(task)) {
+                        throw new RejectedExecutionException("gRPC handler pool and queue are full");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private ExecutorService createVirtualExecutor() {
+        // Looked up at runtime so the module still builds and runs on Java 17
+        try {
+            ExecutorService executor = (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                            MethodType.methodType(ExecutorService.class))
+                    .invoke();
+            log.info("gRPC handlers will run on virtual threads");
+            return executor;
+        } catch (Throwable e) {
+            log.warn("Virtual threads are not available on Java {}, falling back to a bounded pool",
+                    Runtime.version().feature());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (callExecutor != null) {
+            log.info("Shutting down gRPC call executor");
+            callExecutor.shutdown();
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * A ThreadPoolExecutor only adds threads beyond its core size when the queue refuses a task, so
+     * with a plain bounded queue max-pool-size would only take effect once the queue is full. This
+     * queue refuses tasks while no thread is idle, so the pool adds one; once it is at its maximum the
+     * rejection handler queues the task after all.
+     * <p>
+     * Idle threads are the ones waiting in take or poll, counted here rather than asked of the pool,
+     * whose getActiveCount and getPoolSize take its main lock on every submission.
+     */
+    private static final class GrowFirstQueue extends LinkedBlockingQueue<Runnable> {
+
+        private final AtomicInteger idleThreads = new AtomicInteger();
+
+        GrowFirstQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            return idleThreads.get() > 0 && super.offer(task);
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            idleThreads.incrementAndGet();
+            try {
+                return super.take();
+            } finally {
+                idleThreads.decrementAndGet();
+            }
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            idleThreads.incrementAndGet();
+            try {
+                return super.poll(timeout, unit);
+            } finally {
+                idleThreads.decrementAndGet();
+            }
+        }
+
+        boolean forceOffer(Runnable task) {
+            return super.offer(task);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.movie.common.limit;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limiter whose limit follows additive-increase / multiplicative-decrease.
+ * The limit grows by one while calls complete close to the baseline latency and the
+ * limit is actually being used, and shrinks by the backoff ratio when a call is dropped
+ * or its latency rises above baseline x tolerance.
+ * <p>
+ * Methods sharing a limiter can differ in latency by an order of magnitude (a search next to a
+ * point read), so each method keeps its own baseline. The limit shrinks at most once per backoff
+ * interval, since one congested moment produces many slow samples at once, and a baseline that is
+ * exceeded for good drifts up slowly so a method that just got slower does not pin the limit at
+ * its minimum.
+ */
+public class AimdLimiter {
+
+    // Weight of a new sample in the slowly moving baseline
+    private static final double BASELINE_SMOOTHING = 0.01;
+
+    // Weight of a slow sample, capped at baseline x tolerance, so only lasting slowness moves the baseline up
+    private static final double BASELINE_DRIFT = 0.001;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long backoffIntervalNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    // Guarded by this; keyed by full method name, so bounded by the services' method count
+    private final Map<String, Baseline> baselines = new HashMap<>();
+    private long lastDecreaseNanos;
+    private boolean decreased;
+
+    public AimdLimiter(String name, ConcurrencyLimitProperties.Limit limit, double backoffRatio, double latencyTolerance,
+                       Duration backoffInterval) {
+        this.name = name;
+        this.minLimit = Math.max(limit.getMin(), 1);
+        this.maxLimit = Math.max(limit.getMax(), minLimit);
+        this.limit = Math.min(Math.max(limit.getInitial(), minLimit), maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffIntervalNanos = backoffInterval.toNanos();
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Releases a permit and feeds the outcome back into the limit, latency < 0 means no sample
+    public void release(String method, long latencyNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+
+        synchronized (this) {
+            if (dropped) {
+                decrease();
+                return;
+            }
+            if (latencyNanos < 0) {
+                increaseIfSaturated(current);
+                return;
+            }
+            adjust(method, latencyNanos, current);
+        }
+    }
+
+    // Feeds a sample from a call that keeps its permit, such as the time to a stream's first message
+    public synchronized void recordLatency(String method, long latencyNanos) {
+        adjust(method, latencyNanos, inFlight.get());
+    }
+
+    private void adjust(String method, long latencyNanos, int inFlightAtSample) {
+        Baseline baseline = baselines.get(method);
+        if (baseline == null) {
+            baselines.put(method, new Baseline(latencyNanos));
+            increaseIfSaturated(inFlightAtSample);
+            return;
+        }
+        double threshold = baseline.nanos * latencyTolerance;
+        if (latencyNanos > threshold) {
+            baseline.nanos += (threshold - baseline.nanos) * BASELINE_DRIFT;
+            decrease();
+        } else {
+            // Calls near the baseline move it quickly, so a slow period cannot become the new normal
+            baseline.nanos += (latencyNanos - baseline.nanos) * BASELINE_SMOOTHING;
+            increaseIfSaturated(inFlightAtSample);
+        }
+    }
+
+    // Growing an idle limit would only admit a burst later, so it grows only while half used
+    private void increaseIfSaturated(int inFlightAtRelease) {
+        if (inFlightAtRelease * 2 >= limit && limit < maxLimit) {
+            limit = limit + 1;
+        }
+    }
+
+    // Samples of one congested moment arrive together, so they cost the limit one backoff, not one each
+    private void decrease() {
+        long now = System.nanoTime();
+        if (decreased && now - lastDecreaseNanos < backoffIntervalNanos) {
+            return;
+        }
+        decreased = true;
+        lastDecreaseNanos = now;
+        limit = Math.max(minLimit, (int) (limit * backoffRatio));
+    }
+
+    public double utilization() {
+        return (double) inFlight.get() / limit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private static final class Baseline {
+        private double nanos;
+
+        private Baseline(double nanos) {
+            this.nanos = nanos;
+        }
+    }
+}
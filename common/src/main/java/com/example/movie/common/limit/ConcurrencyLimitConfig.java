@@ -0,0 +1,19 @@
+package com.example.movie.common.limit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.grpc.server.GlobalServerInterceptor;
+
+@Configuration
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+@ConditionalOnProperty(prefix = "app.grpc.concurrency-limit", name = "enabled", matchIfMissing = true)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    @GlobalServerInterceptor
+    public ConcurrencyLimitInterceptor concurrencyLimitInterceptor(ConcurrencyLimitProperties properties) {
+        return new ConcurrencyLimitInterceptor(properties);
+    }
+}
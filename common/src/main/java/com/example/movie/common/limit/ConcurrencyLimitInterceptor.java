@@ -0,0 +1,123 @@
+package com.example.movie.common.limit;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fails calls fast with RESOURCE_EXHAUSTED once the adaptive limit is reached, instead of letting
+ * them queue until latency collapses for everyone. Unary calls and streams have separate limits,
+ * and new streams are shed first while unary calls are under pressure.
+ * <p>
+ * Internal streams that stay open for good (exempt methods) take no permit at all, and short
+ * streams users wait on (interactive methods) count as unary calls. A stream's lifetime says
+ * nothing about load, so server streams are sampled by the time to their first message instead.
+ */
+@Slf4j
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+    private final AimdLimiter unaryLimiter;
+    private final AimdLimiter streamingLimiter;
+    private final double streamingShedThreshold;
+    private final Set<String> exemptMethods;
+    private final Set<String> interactiveMethods;
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimitProperties properties) {
+        this.unaryLimiter = new AimdLimiter("unary", properties.getUnary(),
+                properties.getBackoffRatio(), properties.getLatencyTolerance(), properties.getBackoffInterval());
+        this.streamingLimiter = new AimdLimiter("streaming", properties.getStreaming(),
+                properties.getBackoffRatio(), properties.getLatencyTolerance(), properties.getBackoffInterval());
+        this.streamingShedThreshold = properties.getStreamingShedThreshold();
+        this.exemptMethods = Set.copyOf(properties.getExemptMethods());
+        this.interactiveMethods = Set.copyOf(properties.getInteractiveMethods());
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        String methodName = method.getFullMethodName();
+        if (exemptMethods.contains(methodName)) {
+            return next.startCall(call, headers);
+        }
+        boolean unary = method.getType() == MethodDescriptor.MethodType.UNARY
+                || interactiveMethods.contains(methodName);
+        boolean serverStreaming = !unary && method.getType() == MethodDescriptor.MethodType.SERVER_STREAMING;
+        AimdLimiter limiter = unary ? unaryLimiter : streamingLimiter;
+
+        if (!unary && unaryLimiter.utilization() >= streamingShedThreshold) {
+            return reject(call, "Server is busy with unary calls, stream rejected");
+        }
+        if (!limiter.tryAcquire()) {
+            return reject(call, "Concurrency limit of " + limiter.getLimit() + " " + limiter.getName() + " calls reached");
+        }
+
+        long startNanos = System.nanoTime();
+        AtomicBoolean firstMessageSent = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable releaseWithoutSample = () -> {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(methodName, -1, false);
+            }
+        };
+
+        ServerCall<ReqT, RespT> limitedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                if (serverStreaming && firstMessageSent.compareAndSet(false, true)) {
+                    limiter.recordLatency(methodName, System.nanoTime() - startNanos);
+                }
+                super.sendMessage(message);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (released.compareAndSet(false, true)) {
+                    limiter.release(methodName, unary ? System.nanoTime() - startNanos : -1, isDropped(status, unary));
+                }
+                super.close(status, trailers);
+            }
+        };
+
+        try {
+            return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(limitedCall, headers)) {
+                @Override
+                public void onCancel() {
+                    releaseWithoutSample.run();
+                    super.onCancel();
+                }
+
+                @Override
+                public void onComplete() {
+                    releaseWithoutSample.run();
+                    super.onComplete();
+                }
+            };
+        } catch (RuntimeException e) {
+            releaseWithoutSample.run();
+            throw e;
+        }
+    }
+
+    private <ReqT, RespT> ServerCall.Listener<ReqT> reject(ServerCall<ReqT, RespT> call, String reason) {
+        log.debug("Rejecting {}: {}", call.getMethodDescriptor().getFullMethodName(), reason);
+        call.close(Status.RESOURCE_EXHAUSTED.withDescription(reason), new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+
+    // A stream running into its deadline only shows how long the client kept it open
+    private static boolean isDropped(Status status, boolean unary) {
+        return (unary && status.getCode() == Status.Code.DEADLINE_EXCEEDED)
+                || status.getCode() == Status.Code.RESOURCE_EXHAUSTED;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.movie.common.limit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+@Data
+@ConfigurationProperties(prefix = "app.grpc.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    // Limit for unary calls (point reads), adapted to measured latency
+    private Limit unary = new Limit(20, 4, 500);
+
+    // Limit for client, server and bidi streams, which can stay open for a long time
+    private Limit streaming = new Limit(10, 2, 200);
+
+    // Latency above baseline x tolerance counts as congestion
+    private double latencyTolerance = 2.0;
+
+    // Multiplicative decrease applied on congestion
+    private double backoffRatio = 0.9;
+
+    // Congestion shrinks the limit at most once per interval, however many slow calls report it
+    private Duration backoffInterval = Duration.ofMillis(500);
+
+    // New streams are shed once unary calls use this share of their limit, so point reads win
+    private double streamingShedThreshold = 0.8;
+
+    // Full method names (service/method) never limited, for internal streams that stay open for good
+    private Set<String> exemptMethods = new HashSet<>();
+
+    // Short streaming methods that users wait on like a point read, limited and sampled as unary calls
+    private Set<String> interactiveMethods = new HashSet<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private int initial;
+        private int min;
+        private int max;
+    }
+}
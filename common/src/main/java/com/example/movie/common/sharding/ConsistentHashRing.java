@@ -0,0 +1,111 @@
+package com.example.movie.common.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring. Every node is placed at several virtual positions, and a key
+ * belongs to the first node clockwise from its hash. Positions depend only on the node id, so
+ * when a node joins or leaves only the keys between it and its neighbours change owner.
+ */
+public final class ConsistentHashRing<T> {
+
+    private final NavigableMap<Long, T> ring;
+    private final Map<String, T> nodes;
+
+    private ConsistentHashRing(NavigableMap<Long, T> ring, Map<String, T> nodes) {
+        this.ring = ring;
+        this.nodes = nodes;
+    }
+
+    public static <T> ConsistentHashRing<T> empty() {
+        return new ConsistentHashRing<>(Collections.emptyNavigableMap(), Collections.emptyMap());
+    }
+
+    // Builds a ring from node id -> (node, virtual node count)
+    public static <T> ConsistentHashRing<T> of(Map<String, T> nodes, Map<String, Integer> virtualNodes) {
+        NavigableMap<Long, T> ring = new TreeMap<>();
+        nodes.forEach((nodeId, node) -> {
+            int count = Math.max(virtualNodes.getOrDefault(nodeId, 1), 1);
+            for (int i = 0; i < count; i++) {
+                ring.put(hash(nodeId + "#" + i), node);
+            }
+        });
+        return new ConsistentHashRing<>(Collections.unmodifiableNavigableMap(ring), Map.copyOf(nodes));
+    }
+
+    public T nodeFor(int key) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("Consistent-hash ring has no nodes");
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(mix(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    // The owner followed by the next distinct nodes clockwise, the key's replica set
+    public List<T> nodesFor(int key, int count) {
+        int wanted = Math.min(count, nodes.size());
+        List<T> result = new ArrayList<>(wanted);
+        if (wanted == 0) {
+            return result;
+        }
+        long position = mix(key);
+        for (T node : ring.tailMap(position, true).values()) {
+            if (result.size() == wanted) {
+                return result;
+            }
+            if (!result.contains(node)) {
+                result.add(node);
+            }
+        }
+        for (T node : ring.headMap(position, false).values()) {
+            if (result.size() == wanted) {
+                break;
+            }
+            if (!result.contains(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    public Collection<T> nodes() {
+        return nodes.values();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    // Sequential ids would cluster on the ring, so they are scrambled first (MurmurHash3 finalizer)
+    private static long mix(int key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.movie.common.warmup;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Response observer for in-process warm-up calls. Each response is serialized and parsed back,
+ * so the marshalling code gets compiled along with the handler.
+ */
+public class NoopServerCallStreamObserver<T> extends ServerCallStreamObserver<T> {
+
+    @Override
+    public void onNext(T value) {
+        if (value instanceof MessageLite message) {
+            try {
+                message.getParserForType().parseFrom(message.toByteString());
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+    }
+
+    @Override
+    public void onCompleted() {
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+    }
+
+    @Override
+    public void setCompression(String compression) {
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    // Always ready, so a handler that streams from onReady runs right away, as a real call would once it started
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        onReadyHandler.run();
+    }
+
+    @Override
+    public void request(int count) {
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+    }
+
+    @Override
+    public void disableAutoInboundFlowControl() {
+    }
+}
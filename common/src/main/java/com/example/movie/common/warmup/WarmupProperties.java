@@ -0,0 +1,24 @@
+package com.example.movie.common.warmup;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.warmup")
+public class WarmupProperties {
+
+    // When disabled the instance is marked ready right after startup
+    private boolean enabled = true;
+
+    // Upper bound for the warm-up, the instance goes live afterwards even if the JIT is still busy
+    private Duration timeBudget = Duration.ofSeconds(30);
+
+    // Compilation is settled once the JIT spends less than settle-threshold per check-interval
+    private Duration checkInterval = Duration.ofSeconds(1);
+    private Duration settleThreshold = Duration.ofMillis(20);
+
+    // Threads issuing synthetic calls, more than one also exercises the contended paths
+    private int threads = 2;
+}
@@ -0,0 +1,135 @@
+package com.example.movie.common.warmup;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.protobuf.services.HealthStatusManager;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives synthetic calls through the handlers until the JIT has compiled the hot paths, so the
+ * first real requests do not run in the interpreter.
+ * <p>
+ * The instance registers in Eureka as STARTING (eureka.instance.initial-status) and the gRPC
+ * health service reports NOT_SERVING until the warm-up is done. Spring Boot only switches the
+ * actuator readiness state to ACCEPTING_TRAFFIC after all ApplicationRunners have returned.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(WarmupProperties.class)
+public class WarmupRunner implements ApplicationRunner {
+
+    private final WarmupWorkload workload;
+    private final WarmupProperties properties;
+    private final ObjectProvider<HealthStatusManager> healthStatusManager;
+    private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+
+    public WarmupRunner(WarmupWorkload workload, WarmupProperties properties,
+                        ObjectProvider<HealthStatusManager> healthStatusManager,
+                        ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+        this.workload = workload;
+        this.properties = properties;
+        this.healthStatusManager = healthStatusManager;
+        this.applicationInfoManager = applicationInfoManager;
+    }
+
+    // Runs before the gRPC server starts, so health checks never see SERVING too early
+    @PostConstruct
+    public void markNotServing() {
+        healthStatusManager.ifAvailable(manager -> manager.setStatus(
+                HealthStatusManager.SERVICE_NAME_ALL_SERVICES, HealthCheckResponse.ServingStatus.NOT_SERVING));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            if (properties.isEnabled()) {
+                warmUp();
+            }
+        } catch (RuntimeException e) {
+            // A cold instance is still better than one that never takes traffic
+            log.warn("Warm-up failed, going live without it: {}", e.getMessage());
+        } finally {
+            markServing();
+        }
+    }
+
+    private void warmUp() {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + properties.getTimeBudget().toNanos();
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean canMonitor = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong rounds = new AtomicLong();
+        int threads = Math.max(properties.getThreads(), 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    while (!stop.get()) {
+                        workload.runRound();
+                        rounds.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Warm-up round failed, stopping this warm-up thread: {}", e.getMessage());
+                }
+            });
+        }
+
+        String reason = "time budget of " + properties.getTimeBudget() + " used up";
+        try {
+            long lastCompileMillis = canMonitor ? compiler.getTotalCompilationTime() : 0;
+            while (System.nanoTime() < deadlineNanos) {
+                Thread.sleep(properties.getCheckInterval().toMillis());
+                if (canMonitor) {
+                    long compileMillis = compiler.getTotalCompilationTime();
+                    if (compileMillis - lastCompileMillis < properties.getSettleThreshold().toMillis()) {
+                        reason = "compilation settled";
+                        break;
+                    }
+                    lastCompileMillis = compileMillis;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reason = "interrupted";
+        } finally {
+            stop.set(true);
+            executor.shutdown();
+        }
+
+        try {
+            executor.awaitTermination(properties.getCheckInterval().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Warm-up finished after {} ms and {} rounds: {}",
+                (System.nanoTime() - startNanos) / 1_000_000, rounds.get(), reason);
+    }
+
+    private void markServing() {
+        healthStatusManager.ifAvailable(manager -> manager.setStatus(
+                HealthStatusManager.SERVICE_NAME_ALL_SERVICES, HealthCheckResponse.ServingStatus.SERVING));
+        applicationInfoManager.ifAvailable(manager -> manager.setInstanceStatus(InstanceInfo.InstanceStatus.UP));
+        log.info("Instance marked as serving");
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.movie.common.warmup;
+
+/**
+ * One round of synthetic calls through the service's hot paths. Must not change any state.
+ */
+@FunctionalInterface
+public interface WarmupWorkload {
+
+    void runRound();
+}
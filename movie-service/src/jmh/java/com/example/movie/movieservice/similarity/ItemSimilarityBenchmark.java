@@ -0,0 +1,100 @@
+package com.example.movie.movieservice.similarity;
+
+import com.example.movie.movieservice.replication.RatingEntry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Neighbor lookups and recommendations against a matrix built from synthetic ratings, plus the cost
+ * a rating write pays on its path into the engine. Popular movies get most of the ratings and every
+ * user rates around a personal mean, roughly like real rating data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemSimilarityBenchmark {
+
+    @Param({"10000"})
+    int movies;
+
+    @Param({"20000"})
+    int users;
+
+    @Param({"40"})
+    int ratingsPerUser;
+
+    private ItemSimilarityEngine engine;
+    private int[] lookups;
+    private int next;
+    private long timestamp;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        // start() is never called: no rating store to listen to and no scheduled recompute
+        engine = new ItemSimilarityEngine(null, new SimilarityProperties());
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int user = 0; user < users; user++) {
+            float mean = 2.5f + random.nextInt(5) * 0.5f;
+            Set<Integer> rated = new HashSet<>();
+            while (rated.size() < ratingsPerUser) {
+                rated.add(popularMovie(random));
+            }
+            for (int movie : rated) {
+                float rating = Math.max(1f, Math.min(5f, mean + random.nextInt(-2, 3) * 0.5f));
+                engine.onRatingChanged(null, new RatingEntry(movie, user, rating, ++timestamp, "benchmark"));
+            }
+        }
+        while (engine.pendingChanges() > 0) {
+            Thread.sleep(10);
+        }
+        engine.recompute();
+
+        lookups = new int[4096];
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = popularMovie(random);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    // Squaring skews the draw towards low ids, which play the popular movies
+    private int popularMovie(SplittableRandom random) {
+        double draw = random.nextDouble();
+        return (int) (movies * draw * draw) + 1;
+    }
+
+    private int nextLookup() {
+        next = (next + 1) & (lookups.length - 1);
+        return lookups[next];
+    }
+
+    @Benchmark
+    public List<Neighbor> neighbors() {
+        return engine.neighbors(nextLookup());
+    }
+
+    @Benchmark
+    public List<Integer> recommend() {
+        return engine.recommend(nextLookup() % users, 10);
+    }
+
+    // Only the enqueue runs on the caller, which is what a rating write waits for under its movie's lock
+    @Benchmark
+    @Threads(4)
+    public void ratingChange() {
+        int movie = nextLookup();
+        engine.onRatingChanged(null, new RatingEntry(movie, users + movie, 4f, System.nanoTime(), "benchmark"));
+    }
+}
@@ -4,7 +4,8 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 
-@SpringBootApplication
+// The shared gRPC execution, concurrency-limit and warm-up beans live in the common module
+@SpringBootApplication(scanBasePackages = {"com.example.movie.movieservice", "com.example.movie.common"})
 @EnableDiscoveryClient
 public class MovieServiceApplication {
     public static void main(String[] args) {
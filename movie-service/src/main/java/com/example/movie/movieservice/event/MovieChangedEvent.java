@@ -0,0 +1,11 @@
+package com.example.movie.movieservice.event;
+
+// Published by MovieRepository whenever a movie is added or its rating changes
+public record MovieChangedEvent(int movieId, Type type) {
+
+    public enum Type {
+        RATING_UPDATED,
+        MOVIE_ADDED,
+        CATALOG_RELOADED
+    }
+}
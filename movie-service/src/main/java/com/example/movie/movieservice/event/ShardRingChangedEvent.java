@@ -0,0 +1,7 @@
+package com.example.movie.movieservice.event;
+
+import java.util.Set;
+
+// Published by ShardOwnership when movie-service instances join or leave the hash ring
+public record ShardRingChangedEvent(Set<String> instanceIds) {
+}
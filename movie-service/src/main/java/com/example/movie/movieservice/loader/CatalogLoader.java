@@ -0,0 +1,214 @@
+package com.example.movie.movieservice.loader;
+
+import com.example.movie.movieservice.model.Movie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+/**
+ * Loads a CSV catalog with one movie per line: id,title,description,rating,genre,year,director.
+ * Fields may be quoted ("" escapes a quote) but must not contain line breaks. The file is split
+ * into line-aligned chunks that are memory-mapped and parsed in parallel on a fork-join pool.
+ * Movies the filter rejects (ids owned by another shard) are skipped before they are built.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(CatalogProperties.class)
+public class CatalogLoader {
+
+    private static final int FIELD_COUNT = 7;
+    private static final int ESTIMATED_BYTES_PER_LINE = 120;
+
+    private final CatalogProperties properties;
+    private final StringInterner interner;
+
+    public CatalogLoader(CatalogProperties properties, StringInterner interner) {
+        this.properties = properties;
+        this.interner = interner;
+    }
+
+    // Loads the movies of the catalog configured in app.catalog.path that pass the filter, if there is one
+    public Optional<List<Movie>> loadConfiguredCatalog(IntPredicate include) {
+        if (properties.getPath() == null || properties.getPath().isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.of(load(Path.of(properties.getPath()), include));
+    }
+
+    public List<Movie> load(Path file, IntPredicate include) {
+        long startNanos = System.nanoTime();
+        AtomicInteger malformed = new AtomicInteger();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel, (long) properties.getChunkSizeMb() * 1024 * 1024);
+
+            ForkJoinPool pool = new ForkJoinPool(Math.max(properties.getParallelism(), 1));
+            List<List<Movie>> parsed;
+            try {
+                parsed = pool.submit(() -> chunks.parallelStream()
+                        .map(chunk -> parseChunk(channel, chunk[0], chunk[1], include, malformed))
+                        .toList()).get();
+            } finally {
+                pool.shutdown();
+            }
+
+            List<Movie> movies = new ArrayList<>(parsed.stream().mapToInt(List::size).sum());
+            parsed.forEach(movies::addAll);
+
+            log.info("Loaded {} movies from {} in {} ms ({} chunks, {} malformed lines skipped)",
+                    movies.size(), file, (System.nanoTime() - startNanos) / 1_000_000, chunks.size(), malformed.get());
+            return movies;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read catalog " + file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading catalog " + file, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not parse catalog " + file, e.getCause());
+        }
+    }
+
+    // Cuts the file into [start, end) ranges of about chunkSize bytes that end on a line break
+    private List<long[]> split(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            if (end < size) {
+                end = nextLineStart(channel, end, size);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private List<Movie> parseChunk(FileChannel channel, long start, long end, IntPredicate include, AtomicInteger malformed) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<Movie> movies = new ArrayList<>((int) Math.min((end - start) / ESTIMATED_BYTES_PER_LINE + 1, Integer.MAX_VALUE));
+        String[] fields = new String[FIELD_COUNT];
+        byte[] field = new byte[256];
+        int length = 0;
+        int fieldIndex = 0;
+        boolean inQuotes = false;
+
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (inQuotes) {
+                if (b != '"') {
+                    field = append(field, length++, b);
+                } else if (buffer.hasRemaining() && buffer.get(buffer.position()) == '"') {
+                    buffer.get();
+                    field = append(field, length++, b);
+                } else {
+                    inQuotes = false;
+                }
+            } else if (b == '"') {
+                inQuotes = true;
+            } else if (b == ',' || b == '\n') {
+                if (fieldIndex < FIELD_COUNT) {
+                    fields[fieldIndex] = new String(field, 0, length, StandardCharsets.UTF_8);
+                }
+                fieldIndex++;
+                length = 0;
+                if (b == '\n') {
+                    addMovie(movies, fields, fieldIndex, include, malformed);
+                    fieldIndex = 0;
+                    Arrays.fill(fields, null);
+                }
+            } else if (b != '\r') {
+                field = append(field, length++, b);
+            }
+        }
+
+        // Last line of the file without a trailing line break
+        if (length > 0 || fieldIndex > 0) {
+            if (fieldIndex < FIELD_COUNT) {
+                fields[fieldIndex] = new String(field, 0, length, StandardCharsets.UTF_8);
+            }
+            addMovie(movies, fields, fieldIndex + 1, include, malformed);
+        }
+        return movies;
+    }
+
+    private void addMovie(List<Movie> movies, String[] fields, int fieldCount, IntPredicate include, AtomicInteger malformed) {
+        if (fieldCount == 1 && fields[0].isBlank()) {
+            return; // Empty line
+        }
+        if (fieldCount != FIELD_COUNT) {
+            malformed.incrementAndGet();
+            return;
+        }
+        if (fields[0].trim().equalsIgnoreCase("id")) {
+            return; // Header
+        }
+
+        try {
+            int id = Integer.parseInt(fields[0].trim());
+            if (!include.test(id)) {
+                return;
+            }
+            movies.add(Movie.builder()
+                    .id(id)
+                    .title(fields[1])
+                    .description(fields[2])
+                    .rating(Float.parseFloat(fields[3].trim()))
+                    .genre(interner.intern(fields[4].trim()))
+                    .year(Integer.parseInt(fields[5].trim()))
+                    .director(interner.intern(fields[6].trim()))
+                    .build());
+        } catch (NumberFormatException e) {
+            malformed.incrementAndGet();
+        }
+    }
+
+    private static byte[] append(byte[] field, int index, byte b) {
+        if (index == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[index] = b;
+        return field;
+    }
+}
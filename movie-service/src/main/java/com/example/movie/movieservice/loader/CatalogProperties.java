@@ -0,0 +1,18 @@
+package com.example.movie.movieservice.loader;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.catalog")
+public class CatalogProperties {
+
+    // CSV catalog to load on startup, the built-in sample movies are used when empty
+    private String path = "";
+
+    // Threads parsing chunks of the file
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // Target size of each chunk, the real boundary is moved to the next line break
+    private int chunkSizeMb = 32;
+}
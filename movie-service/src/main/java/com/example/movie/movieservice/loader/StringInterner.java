@@ -0,0 +1,24 @@
+package com.example.movie.movieservice.loader;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplicates low-cardinality strings such as genres and directors, so a large catalog
+ * holds one copy of each instead of one per movie.
+ */
+@Component
+public class StringInterner {
+
+    private final Map<String, String> pool = new ConcurrentHashMap<>();
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = pool.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
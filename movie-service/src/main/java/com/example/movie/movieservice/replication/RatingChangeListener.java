@@ -0,0 +1,12 @@
+package com.example.movie.movieservice.replication;
+
+/**
+ * Notified when a (movie, user) rating register changes, for local writes and merged remote ones.
+ * Called while the movie's ratings are locked, so changes to one register arrive in order.
+ */
+@FunctionalInterface
+public interface RatingChangeListener {
+
+    // previous is null when the user had not rated the movie before
+    void onRatingChanged(RatingEntry previous, RatingEntry current);
+}
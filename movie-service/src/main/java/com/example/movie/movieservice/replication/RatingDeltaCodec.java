@@ -0,0 +1,47 @@
+package com.example.movie.movieservice.replication;
+
+import com.example.movie.movieservice.proto.RatingDelta;
+import com.example.movie.movieservice.proto.RatingDeltaBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts between RatingEntry and the wire format. Replica ids are sent once per batch and
+ * referenced by index, so each delta costs a few varints instead of repeating the id string.
+ */
+public final class RatingDeltaCodec {
+
+    private RatingDeltaCodec() {
+    }
+
+    public static RatingDeltaBatch encode(String senderReplicaId, List<RatingEntry> entries) {
+        RatingDeltaBatch.Builder batch = RatingDeltaBatch.newBuilder().setSenderReplicaId(senderReplicaId);
+        Map<String, Integer> replicaIndex = new HashMap<>();
+
+        for (RatingEntry entry : entries) {
+            int origin = replicaIndex.computeIfAbsent(entry.replicaId(), id -> {
+                batch.addReplicaIds(id);
+                return batch.getReplicaIdsCount() - 1;
+            });
+            batch.addDeltas(RatingDelta.newBuilder()
+                    .setMovieId(entry.movieId())
+                    .setUserId(entry.userId())
+                    .setRating(entry.rating())
+                    .setTimestamp(entry.timestamp())
+                    .setOrigin(origin));
+        }
+        return batch.build();
+    }
+
+    public static List<RatingEntry> decode(RatingDeltaBatch batch) {
+        List<RatingEntry> entries = new ArrayList<>(batch.getDeltasCount());
+        for (RatingDelta delta : batch.getDeltasList()) {
+            entries.add(new RatingEntry(delta.getMovieId(), delta.getUserId(), delta.getRating(),
+                    delta.getTimestamp(), batch.getReplicaIds(delta.getOrigin())));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.movie.movieservice.replication;
+
+import com.example.movie.movieservice.proto.RatingDeltaBatch;
+import com.example.movie.movieservice.proto.RatingDigestRequest;
+import com.example.movie.movieservice.sharding.ShardOwnership;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Digest-based anti-entropy. A replica sends a peer the digests of the ratings they both hold,
+ * hashed into buckets, and the peer answers with its ratings in the buckets whose digest differs.
+ * In sync, a round costs one digest per non-empty bucket instead of the whole rating store.
+ * Pulling works for a peer that is not registered yet, so a new instance fills its share before
+ * it takes traffic.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class RatingDigests {
+
+    private final RatingStore ratingStore;
+    private final ShardOwnership ownership;
+    private final ReplicationProperties properties;
+
+    public RatingDigests(RatingStore ratingStore, ShardOwnership ownership, ReplicationProperties properties) {
+        this.ratingStore = ratingStore;
+        this.ownership = ownership;
+        this.properties = properties;
+    }
+
+    // Digests of what this replica shares with the peer, sent to pull whatever differs
+    public RatingDigestRequest requestFor(String peerId) {
+        int bucketCount = properties.getDigestBuckets();
+        return RatingDigestRequest.newBuilder()
+                .setSenderReplicaId(ratingStore.getReplicaId())
+                .setSenderVirtualNodes(ownership.selfVirtualNodes())
+                .setBucketCount(bucketCount)
+                .putAllBucketDigests(ratingStore.digests(bucketCount,
+                        ownership.sharedWith(peerId, ownership.virtualNodesOf(peerId))))
+                .build();
+    }
+
+    // This replica's ratings in the buckets where the requester differs, produced a batch at a time
+    public Iterator<RatingDeltaBatch> differences(RatingDigestRequest request) {
+        int bucketCount = request.getBucketCount() > 0 ? request.getBucketCount() : properties.getDigestBuckets();
+        IntPredicate shared = ownership.sharedWith(request.getSenderReplicaId(), request.getSenderVirtualNodes());
+
+        // Buckets only the requester has ratings in are for this replica's own pull from it
+        Set<Integer> mismatched = new HashSet<>();
+        ratingStore.digests(bucketCount, shared).forEach((bucket, digest) -> {
+            if (!digest.equals(request.getBucketDigestsMap().get(bucket))) {
+                mismatched.add(bucket);
+            }
+        });
+        List<Integer> movieIds = mismatched.isEmpty()
+                ? List.of()
+                : ratingStore.moviesInBuckets(bucketCount, mismatched, shared);
+        log.debug("Replica {} differs in {} of {} buckets, sending the ratings of {} movies",
+                request.getSenderReplicaId(), mismatched.size(), bucketCount, movieIds.size());
+
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < movieIds.size();
+            }
+
+            @Override
+            public RatingDeltaBatch next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<RatingEntry> chunk = new ArrayList<>();
+                while (next < movieIds.size() && chunk.size() < properties.getMaxBatchSize()) {
+                    chunk.addAll(ratingStore.entriesOf(movieIds.get(next++)));
+                }
+                return RatingDeltaCodec.encode(ratingStore.getReplicaId(), chunk);
+            }
+        };
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.movie.movieservice.replication;
+
+/**
+ * Last-writer-wins register holding one user's rating of one movie. Ties on the timestamp are
+ * broken by the id of the replica that accepted the write, so every replica picks the same winner.
+ */
+public record RatingEntry(int movieId, int userId, float rating, long timestamp, String replicaId) {
+
+    public boolean supersedes(RatingEntry other) {
+        if (other == null) {
+            return true;
+        }
+        if (timestamp != other.timestamp) {
+            return timestamp > other.timestamp;
+        }
+        return replicaId.compareTo(other.replicaId) > 0;
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.movie.movieservice.replication;
+
+import com.example.movie.movieservice.event.ShardRingChangedEvent;
+import com.example.movie.movieservice.proto.MovieServiceGrpc;
+import com.example.movie.movieservice.proto.RatingDeltaBatch;
+import com.example.movie.movieservice.proto.RatingDigestRequest;
+import com.example.movie.movieservice.proto.SyncRatingsResponse;
+import com.example.movie.movieservice.repository.MovieRepository;
+import com.example.movie.movieservice.sharding.ShardOwnership;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replication between the instances holding the same movies.
+ * <p>
+ * Local rating writes are queued per peer for the other replicas of their movie and pushed each
+ * flush interval over a SyncRatings stream that only writes while the peer is ready. The stream is
+ * completed once the queue is drained, and what it carried is only forgotten when the peer has
+ * acknowledged it; a failed round puts it back in the queue. Each anti-entropy interval the
+ * replica also pulls from every peer whatever their digests say it is missing (see
+ * {@link RatingDigests}), which repairs dropped deltas and fills movies that just moved shard.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(ReplicationProperties.class)
+@ConditionalOnProperty(prefix = "app.replication", name = "enabled", matchIfMissing = true)
+public class RatingReplicator {
+
+    // Batches per push round, the round is completed and acknowledged before more is sent
+    private static final int BATCHES_PER_ROUND = 16;
+
+    private final RatingStore ratingStore;
+    private final RatingDigests digests;
+    private final MovieRepository movieRepository;
+    private final ShardOwnership ownership;
+    private final ReplicationProperties properties;
+
+    private final Map<String, PeerLink> links = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rating-replicator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long nextAntiEntropyNanos;
+
+    public RatingReplicator(RatingStore ratingStore, RatingDigests digests, MovieRepository movieRepository,
+                            ShardOwnership ownership, ReplicationProperties properties) {
+        this.ratingStore = ratingStore;
+        this.digests = digests;
+        this.movieRepository = movieRepository;
+        this.ownership = ownership;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        // The first round runs right away so a new instance pulls its share while it is still warming up
+        nextAntiEntropyNanos = System.nanoTime();
+        long interval = properties.getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushSafely, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Movies changed hands, pull the ratings of the gained ones without waiting a full interval
+    @EventListener(ShardRingChangedEvent.class)
+    public void onShardRingChanged() {
+        nextAntiEntropyNanos = System.nanoTime();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Rating replication round failed: {}", e.getMessage());
+        }
+    }
+
+    void flush() {
+        Map<String, String> peers = ownership.peers();
+        closeStalePeers(peers.keySet());
+
+        List<RatingEntry> deltas;
+        while (!(deltas = ratingStore.drainPendingDeltas(properties.getMaxBatchSize())).isEmpty()) {
+            route(peers, deltas);
+        }
+        links.values().forEach(this::push);
+
+        if (System.nanoTime() - nextAntiEntropyNanos >= 0) {
+            nextAntiEntropyNanos = System.nanoTime() + properties.getAntiEntropyInterval().toNanos();
+            peers.forEach((instanceId, address) -> pull(link(instanceId, address)));
+        }
+    }
+
+    // Queues each entry for the other replicas of its movie. A movie without any keeps its ratings
+    // here only; an instance that becomes its replica later pulls them in its first anti-entropy round.
+    private void route(Map<String, String> peers, List<RatingEntry> entries) {
+        Map<String, List<RatingEntry>> byPeer = new HashMap<>();
+        for (RatingEntry entry : entries) {
+            for (String instanceId : ownership.replicasOf(entry.movieId())) {
+                if (peers.containsKey(instanceId)) {
+                    byPeer.computeIfAbsent(instanceId, id -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+        byPeer.forEach((instanceId, peerEntries) -> link(instanceId, peers.get(instanceId)).enqueue(peerEntries));
+    }
+
+    private void push(PeerLink link) {
+        if (!link.startRound()) {
+            return;
+        }
+        MovieServiceGrpc.newStub(link.channel)
+                .withDeadlineAfter(properties.getAntiEntropyInterval().toMillis(), TimeUnit.MILLISECONDS)
+                .syncRatings(new ClientResponseObserver<RatingDeltaBatch, SyncRatingsResponse>() {
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<RatingDeltaBatch> requestStream) {
+                        requestStream.setOnReadyHandler(() -> link.send(requestStream));
+                    }
+
+                    @Override
+                    public void onNext(SyncRatingsResponse response) {
+                        log.debug("Replica {} applied {} rating deltas", link.instanceId, response.getAppliedCount());
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        log.warn("Rating sync stream to {} failed, will resend: {}", link.instanceId, t.getMessage());
+                        link.endRound(false);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        link.endRound(true);
+                    }
+                });
+    }
+
+    // Streams back the peer's ratings where its digests differ, one batch requested at a time
+    private void pull(PeerLink link) {
+        if (link.pulling) {
+            return;
+        }
+        link.pulling = true;
+        RatingDigestRequest request = digests.requestFor(link.instanceId);
+        MovieServiceGrpc.newStub(link.channel)
+                .withDeadlineAfter(properties.getAntiEntropyInterval().toMillis(), TimeUnit.MILLISECONDS)
+                .pullRatings(request, new ClientResponseObserver<RatingDigestRequest, RatingDeltaBatch>() {
+                    private ClientCallStreamObserver<RatingDigestRequest> call;
+                    private int received;
+                    private int changed;
+
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<RatingDigestRequest> requestStream) {
+                        call = requestStream;
+                        requestStream.disableAutoRequestWithInitial(1);
+                    }
+
+                    @Override
+                    public void onNext(RatingDeltaBatch batch) {
+                        received += batch.getDeltasCount();
+                        changed += movieRepository.mergeRemoteRatings(RatingDeltaCodec.decode(batch));
+                        call.request(1);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        link.pulling = false;
+                        log.warn("Pulling ratings from {} failed: {}", link.instanceId, t.getMessage());
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        link.pulling = false;
+                        if (received > 0) {
+                            log.info("Anti-entropy with {}: {} ratings received, {} movies changed",
+                                    link.instanceId, received, changed);
+                        }
+                    }
+                });
+    }
+
+    private PeerLink link(String instanceId, String address) {
+        return links.computeIfAbsent(instanceId, id -> {
+            log.info("Opening rating sync channel to replica {} at {}", id, address);
+            int separator = address.lastIndexOf(':');
+            return new PeerLink(id, ManagedChannelBuilder.forAddress(address.substring(0, separator),
+                            Integer.parseInt(address.substring(separator + 1)))
+                    .usePlaintext()
+                    .build());
+        });
+    }
+
+    // Undelivered deltas of a peer that left are dropped, anti-entropy repairs them if it comes back
+    private void closeStalePeers(Set<String> live) {
+        links.entrySet().removeIf(entry -> {
+            if (live.contains(entry.getKey())) {
+                return false;
+            }
+            log.info("Replica {} left, closing its rating sync channel", entry.getKey());
+            entry.getValue().channel.shutdownNow();
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        links.values().forEach(link -> link.channel.shutdown());
+    }
+
+    private final class PeerLink {
+
+        final String instanceId;
+        final ManagedChannel channel;
+        volatile boolean pulling;
+
+        // Guarded by this: deltas waiting for the next round, and those sent in the open round but not acknowledged
+        private final Deque<RatingEntry> outbox = new ArrayDeque<>();
+        private List<RatingEntry> inFlight;
+        private boolean roundClosed;
+
+        PeerLink(String instanceId, ManagedChannel channel) {
+            this.instanceId = instanceId;
+            this.channel = channel;
+        }
+
+        synchronized void enqueue(List<RatingEntry> entries) {
+            outbox.addAll(entries);
+            trim();
+        }
+
+        // At most one round is open per peer
+        synchronized boolean startRound() {
+            if (inFlight != null || outbox.isEmpty()) {
+                return false;
+            }
+            inFlight = new ArrayList<>();
+            roundClosed = false;
+            return true;
+        }
+
+        // Runs on every ready signal of the stream, writes until the transport pushes back
+        synchronized void send(ClientCallStreamObserver<RatingDeltaBatch> stream) {
+            int roundLimit = properties.getMaxBatchSize() * BATCHES_PER_ROUND;
+            while (!roundClosed && stream.isReady() && !outbox.isEmpty() && inFlight.size() < roundLimit) {
+                List<RatingEntry> batch = new ArrayList<>(Math.min(outbox.size(), properties.getMaxBatchSize()));
+                while (batch.size() < properties.getMaxBatchSize() && !outbox.isEmpty()) {
+                    batch.add(outbox.pollFirst());
+                }
+                inFlight.addAll(batch);
+                stream.onNext(RatingDeltaCodec.encode(ratingStore.getReplicaId(), batch));
+            }
+            if (!roundClosed && (outbox.isEmpty() || inFlight.size() >= roundLimit)) {
+                roundClosed = true;
+                stream.onCompleted();
+            }
+        }
+
+        synchronized void endRound(boolean acknowledged) {
+            if (!acknowledged && inFlight != null) {
+                for (ListIterator<RatingEntry> it = inFlight.listIterator(inFlight.size()); it.hasPrevious(); ) {
+                    outbox.addFirst(it.previous());
+                }
+                trim();
+            }
+            inFlight = null;
+        }
+
+        // Drops the oldest deltas past the bound, the next anti-entropy round with this peer finds them
+        private void trim() {
+            int dropped = 0;
+            while (outbox.size() > properties.getMaxPendingPerPeer()) {
+                outbox.pollFirst();
+                dropped++;
+            }
+            if (dropped > 0) {
+                log.warn("Replica {} is {} deltas behind, dropped the {} oldest", instanceId, outbox.size(), dropped);
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.movie.movieservice.replication;
+
+import com.netflix.appinfo.EurekaInstanceConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+
+/**
+ * Replicated rating state. Each (movie, user) rating is a last-writer-wins register, so merging is
+ * commutative, associative and idempotent and replicas converge whatever order deltas arrive in.
+ * The per-movie sum and count are kept in step with the winning registers, which makes the average
+ * an O(1) read on every replica. So is a digest of the registers (XOR of their hashes), which lets two
+ * replicas find the movies they disagree on by comparing a few thousand bucket digests.
+ */
+@Component
+@Slf4j
+public class RatingStore {
+
+    private final String replicaId;
+    private final Map<Integer, MovieRatings> ratingsByMovie = new ConcurrentHashMap<>();
+
+    // Local writes not yet shipped to the other replicas
+    private final Queue<RatingEntry> pendingDeltas = new ConcurrentLinkedQueue<>();
+
+    private final List<RatingChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Hybrid logical clock: wall time, but never behind anything this replica has issued or seen.
+    // Every rating write ticks it, so it is advanced by CAS rather than under a lock.
+    private final AtomicLong lastTimestamp = new AtomicLong();
+
+    public RatingStore(EurekaInstanceConfig instanceConfig) {
+        this.replicaId = instanceConfig.getInstanceId();
+        log.info("Rating store running as replica {}", replicaId);
+    }
+
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    public void addListener(RatingChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    // Records a rating accepted by this replica and queues it for replication
+    public RatingEntry applyLocal(int movieId, int userId, float rating) {
+        RatingEntry entry = new RatingEntry(movieId, userId, rating, nextTimestamp(), replicaId);
+        ratingsByMovie.computeIfAbsent(movieId, k -> new MovieRatings(listeners)).apply(entry);
+        pendingDeltas.add(entry);
+        return entry;
+    }
+
+    // Merges remote registers, returns the ids of movies whose winning ratings changed
+    public Set<Integer> merge(Collection<RatingEntry> entries) {
+        Set<Integer> changedMovies = new HashSet<>();
+        for (RatingEntry entry : entries) {
+            observeTimestamp(entry.timestamp());
+            if (ratingsByMovie.computeIfAbsent(entry.movieId(), k -> new MovieRatings(listeners)).apply(entry)) {
+                changedMovies.add(entry.movieId());
+            }
+        }
+        return changedMovies;
+    }
+
+    public OptionalDouble averageRating(int movieId) {
+        MovieRatings ratings = ratingsByMovie.get(movieId);
+        return ratings != null ? ratings.average() : OptionalDouble.empty();
+    }
+
+    // Current winning rating per user for a movie
+    public Map<Integer, Float> ratingsOf(int movieId) {
+        MovieRatings ratings = ratingsByMovie.get(movieId);
+        return ratings != null ? ratings.snapshot() : Collections.emptyMap();
+    }
+
+    // Forgets a movie this replica no longer holds. Its registers are queued once more so they reach
+    // the movie's new replicas even if this was the last instance that had them.
+    public void removeMovie(int movieId) {
+        MovieRatings ratings = ratingsByMovie.remove(movieId);
+        if (ratings != null) {
+            pendingDeltas.addAll(ratings.entries());
+        }
+    }
+
+    public List<RatingEntry> drainPendingDeltas(int max) {
+        List<RatingEntry> drained = new ArrayList<>();
+        RatingEntry entry;
+        while (drained.size() < max && (entry = pendingDeltas.poll()) != null) {
+            drained.add(entry);
+        }
+        return drained;
+    }
+
+    // Digest of each non-empty bucket over the movies the filter accepts, see bucketOf
+    public Map<Integer, Long> digests(int bucketCount, IntPredicate include) {
+        Map<Integer, Long> digests = new HashMap<>();
+        ratingsByMovie.forEach((movieId, ratings) -> {
+            long digest = ratings.digest();
+            if (digest != 0 && include.test(movieId)) {
+                digests.merge(bucketOf(movieId, bucketCount), digest, (a, b) -> a ^ b);
+            }
+        });
+        return digests;
+    }
+
+    public List<Integer> moviesInBuckets(int bucketCount, Set<Integer> buckets, IntPredicate include) {
+        List<Integer> movieIds = new ArrayList<>();
+        for (int movieId : ratingsByMovie.keySet()) {
+            if (buckets.contains(bucketOf(movieId, bucketCount)) && include.test(movieId)) {
+                movieIds.add(movieId);
+            }
+        }
+        return movieIds;
+    }
+
+    public List<RatingEntry> entriesOf(int movieId) {
+        MovieRatings ratings = ratingsByMovie.get(movieId);
+        return ratings != null ? ratings.entries() : List.of();
+    }
+
+    // Movies are spread over the buckets by a mixed hash so neighbouring ids do not share one
+    public static int bucketOf(int movieId, int bucketCount) {
+        return Math.floorMod(Long.hashCode(mix(movieId)), bucketCount);
+    }
+
+    private static long hash(RatingEntry entry) {
+        long h = mix(((long) entry.movieId() << 32) | (entry.userId() & 0xffffffffL));
+        h = mix(h ^ entry.timestamp());
+        h = mix(h ^ Float.floatToIntBits(entry.rating()));
+        return mix(h ^ entry.replicaId().hashCode());
+    }
+
+    // MurmurHash3 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long nextTimestamp() {
+        long now = System.currentTimeMillis();
+        return lastTimestamp.accumulateAndGet(now, (last, wall) -> Math.max(wall, last + 1));
+    }
+
+    private void observeTimestamp(long timestamp) {
+        lastTimestamp.accumulateAndGet(timestamp, Math::max);
+    }
+
+    private static final class MovieRatings {
+        private final Map<Integer, RatingEntry> byUser = new HashMap<>();
+        private final List<RatingChangeListener> listeners;
+        private double sum;
+        private int count;
+        private long digest;
+
+        MovieRatings(List<RatingChangeListener> listeners) {
+            this.listeners = listeners;
+        }
+
+        synchronized boolean apply(RatingEntry entry) {
+            RatingEntry current = byUser.get(entry.userId());
+            if (!entry.supersedes(current)) {
+                return false;
+            }
+            byUser.put(entry.userId(), entry);
+            if (current != null) {
+                sum -= current.rating();
+                digest ^= hash(current);
+            } else {
+                count++;
+            }
+            sum += entry.rating();
+            digest ^= hash(entry);
+            for (RatingChangeListener listener : listeners) {
+                listener.onRatingChanged(current, entry);
+            }
+            return true;
+        }
+
+        synchronized OptionalDouble average() {
+            return count > 0 ? OptionalDouble.of(sum / count) : OptionalDouble.empty();
+        }
+
+        synchronized long digest() {
+            return digest;
+        }
+
+        synchronized Map<Integer, Float> snapshot() {
+            Map<Integer, Float> ratings = new HashMap<>(byUser.size() * 2);
+            byUser.forEach((userId, entry) -> ratings.put(userId, entry.rating()));
+            return ratings;
+        }
+
+        synchronized List<RatingEntry> entries() {
+            return new ArrayList<>(byUser.values());
+        }
+    }
+}
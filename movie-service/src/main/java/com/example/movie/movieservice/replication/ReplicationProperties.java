@@ -0,0 +1,28 @@
+package com.example.movie.movieservice.replication;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.replication")
+public class ReplicationProperties {
+
+    private boolean enabled = true;
+
+    // How often local rating writes are pushed to the other replicas
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    // How often each peer's digests are compared with ours, bounds convergence when deltas were lost
+    private Duration antiEntropyInterval = Duration.ofSeconds(30);
+
+    // Buckets the shared movies are hashed into for digest comparison, a mismatch re-sends one bucket
+    private int digestBuckets = 4096;
+
+    // Maximum number of deltas per RatingDeltaBatch message
+    private int maxBatchSize = 1000;
+
+    // Undelivered deltas kept per peer, beyond it the oldest are dropped and left to anti-entropy
+    private int maxPendingPerPeer = 100_000;
+}
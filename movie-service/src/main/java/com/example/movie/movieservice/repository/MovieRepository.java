@@ -1,42 +1,78 @@
 package com.example.movie.movieservice.repository;
 
+import com.example.movie.movieservice.event.MovieChangedEvent;
+import com.example.movie.movieservice.event.ShardRingChangedEvent;
+import com.example.movie.movieservice.loader.CatalogLoader;
 import com.example.movie.movieservice.model.Movie;
+import com.example.movie.movieservice.replication.RatingEntry;
+import com.example.movie.movieservice.replication.RatingStore;
+import com.example.movie.movieservice.search.MovieSearchIndex;
+import com.example.movie.movieservice.sharding.ShardOwnership;
+import com.example.movie.movieservice.similarity.ItemSimilarityEngine;
+import com.example.movie.movieservice.trending.TrendingEngine;
+import com.example.movie.movieservice.trending.TrendingSignal;
 import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Repository;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Repository
+@RequiredArgsConstructor
+@Slf4j
 public class MovieRepository {
+    private static final int RECOMMENDATION_COUNT = 5;
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final RatingStore ratingStore;
+    private final CatalogLoader catalogLoader;
+    private final ItemSimilarityEngine similarityEngine;
+    private final TrendingEngine trendingEngine;
+    private final ShardOwnership ownership;
     private final Map<Integer, Movie> movies = new ConcurrentHashMap<>();
-    private final Map<Integer, Map<Integer, Float>> userRatings = new ConcurrentHashMap<>();
+    private final RatingIndex ratingIndex = new RatingIndex();
+    private final MovieSearchIndex searchIndex = new MovieSearchIndex();
 
     @PostConstruct
     public void init() {
-        // Initialize with sample data
-        addMovie(Movie.builder().id(1).title("The Shawshank Redemption").description("Two imprisoned men bond over a number of years")
-                .rating(9.3f).genre("Drama").year(1994).director("Frank Darabont").build());
-        addMovie(Movie.builder().id(2).title("The Godfather").description("The aging patriarch of an organized crime dynasty transfers control")
-                .rating(9.2f).genre("Crime").year(1972).director("Francis Ford Coppola").build());
-        addMovie(Movie.builder().id(3).title("The Dark Knight").description("The menace known as the Joker wreaks havoc on Gotham City")
-                .rating(9.0f).genre("Action").year(2008).director("Christopher Nolan").build());
-        addMovie(Movie.builder().id(4).title("Inception").description("A thief who steals corporate secrets through dream-sharing technology")
-                .rating(8.8f).genre("Sci-Fi").year(2010).director("Christopher Nolan").build());
-        addMovie(Movie.builder().id(5).title("Pulp Fiction").description("The lives of two mob hitmen, a boxer, a gangster and his wife")
-                .rating(8.9f).genre("Crime").year(1994).director("Quentin Tarantino").build());
-        addMovie(Movie.builder().id(6).title("The Matrix").description("A computer hacker learns about the true nature of reality")
-                .rating(8.7f).genre("Sci-Fi").year(1999).director("Lana Wachowski").build());
-        addMovie(Movie.builder().id(7).title("Goodfellas").description("The story of Henry Hill and his life in the mob")
-                .rating(8.7f).genre("Crime").year(1990).director("Martin Scorsese").build());
-        addMovie(Movie.builder().id(8).title("Fight Club").description("An insomniac office worker and a devil-may-care soapmaker form an underground fight club")
-                .rating(8.8f).genre("Drama").year(1999).director("David Fincher").build());
-        addMovie(Movie.builder().id(9).title("Forrest Gump").description("The presidencies of Kennedy and Johnson, the Vietnam War, and Watergate through the eyes of Forrest Gump")
-                .rating(8.8f).genre("Drama").year(1994).director("Robert Zemeckis").build());
-        addMovie(Movie.builder().id(10).title("Interstellar").description("A team of explorers travel through a wormhole in space")
-                .rating(8.6f).genre("Sci-Fi").year(2014).director("Christopher Nolan").build());
+        // Runs before the context is refreshed, so the service is not ready until its shard of the catalog is loaded
+        bulkLoad(ownedCatalog(), false);
+    }
+
+    // This shard's movies from the configured catalog, or from the sample data when none is configured
+    private List<Movie> ownedCatalog() {
+        return catalogLoader.loadConfiguredCatalog(ownership::owns)
+                .orElseGet(() -> sampleMovies().stream().filter(movie -> ownership.owns(movie.getId())).toList());
+    }
+
+    private static List<Movie> sampleMovies() {
+        return List.of(
+                Movie.builder().id(1).title("The Shawshank Redemption").description("Two imprisoned men bond over a number of years")
+                        .rating(9.3f).genre("Drama").year(1994).director("Frank Darabont").build(),
+                Movie.builder().id(2).title("The Godfather").description("The aging patriarch of an organized crime dynasty transfers control")
+                        .rating(9.2f).genre("Crime").year(1972).director("Francis Ford Coppola").build(),
+                Movie.builder().id(3).title("The Dark Knight").description("The menace known as the Joker wreaks havoc on Gotham City")
+                        .rating(9.0f).genre("Action").year(2008).director("Christopher Nolan").build(),
+                Movie.builder().id(4).title("Inception").description("A thief who steals corporate secrets through dream-sharing technology")
+                        .rating(8.8f).genre("Sci-Fi").year(2010).director("Christopher Nolan").build(),
+                Movie.builder().id(5).title("Pulp Fiction").description("The lives of two mob hitmen, a boxer, a gangster and his wife")
+                        .rating(8.9f).genre("Crime").year(1994).director("Quentin Tarantino").build(),
+                Movie.builder().id(6).title("The Matrix").description("A computer hacker learns about the true nature of reality")
+                        .rating(8.7f).genre("Sci-Fi").year(1999).director("Lana Wachowski").build(),
+                Movie.builder().id(7).title("Goodfellas").description("The story of Henry Hill and his life in the mob")
+                        .rating(8.7f).genre("Crime").year(1990).director("Martin Scorsese").build(),
+                Movie.builder().id(8).title("Fight Club").description("An insomniac office worker and a devil-may-care soapmaker form an underground fight club")
+                        .rating(8.8f).genre("Drama").year(1999).director("David Fincher").build(),
+                Movie.builder().id(9).title("Forrest Gump").description("The presidencies of Kennedy and Johnson, the Vietnam War, and Watergate through the eyes of Forrest Gump")
+                        .rating(8.8f).genre("Drama").year(1994).director("Robert Zemeckis").build(),
+                Movie.builder().id(10).title("Interstellar").description("A team of explorers travel through a wormhole in space")
+                        .rating(8.6f).genre("Sci-Fi").year(2014).director("Christopher Nolan").build());
     }
 
     public Movie getMovieById(int id) {
@@ -44,47 +80,197 @@ public class MovieRepository {
     }
 
     public List<Movie> getTrendingMovies(int limit, String genre) {
-        Stream<Movie> movieStream = movies.values().stream()
-                .sorted(Comparator.comparing(Movie::getRating).reversed());
-        
-        if (genre != null && !genre.isEmpty()) {
-            movieStream = movieStream.filter(movie -> movie.getGenre().equalsIgnoreCase(genre));
+        return ratingIndex.top(limit, genre).stream()
+                .map(movies::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Most interacted-with movies right now, padded with the all-time list while there is little activity
+    public List<Movie> getTrendingNowMovies(int limit, String genre) {
+        List<Movie> trending = new ArrayList<>(limit);
+        Set<Integer> added = new HashSet<>();
+        for (int movieId : trendingEngine.top(limit, genre)) {
+            Movie movie = movies.get(movieId);
+            if (movie != null) {
+                trending.add(movie);
+                added.add(movieId);
+            }
+        }
+        if (trending.size() < limit) {
+            for (Movie movie : getTrendingMovies(limit, genre)) {
+                if (trending.size() == limit) {
+                    break;
+                }
+                if (added.add(movie.getId())) {
+                    trending.add(movie);
+                }
+            }
         }
-        
-        return movieStream.limit(limit).collect(Collectors.toList());
+        return trending;
+    }
+
+    public void recordInteraction(Movie movie, TrendingSignal signal) {
+        trendingEngine.record(movie.getId(), movie.getGenre(), signal);
+    }
+
+    public double trendingScore(int movieId) {
+        return trendingEngine.score(movieId);
+    }
+
+    public List<MovieSearchIndex.Hit> searchMovies(String query, int limit) {
+        return searchIndex.search(query, limit, movies::get, ratingIndex.allByRating());
     }
 
     public boolean updateRating(int movieId, int userId, float rating) {
-        Movie movie = movies.get(movieId);
-        if (movie != null) {
-            // Update user-specific rating
-            userRatings.computeIfAbsent(movieId, k -> new HashMap<>())
-                    .put(userId, rating);
-            
-            // Recalculate overall rating (average of all user ratings)
-            Map<Integer, Float> ratings = userRatings.get(movieId);
-            if (ratings != null && !ratings.isEmpty()) {
-                float averageRating = (float) ratings.values().stream()
-                        .mapToDouble(Float::doubleValue)
-                        .average()
-                        .orElse(movie.getRating());
-                movie.setRating(averageRating);
+        if (movies.containsKey(movieId) && ownership.owns(movieId)) {
+            // Record the user-specific rating, replicated to the other instances by RatingReplicator
+            ratingStore.applyLocal(movieId, userId, rating);
+            Movie movie = refreshRating(movieId);
+            // Only the write counts towards trending: merged copies of it are old news, and a full
+            // anti-entropy pull would otherwise count every rating ever made as happening right now
+            if (movie != null) {
+                trendingEngine.record(movieId, movie.getGenre(), TrendingSignal.RATING);
             }
             return true;
         }
         return false;
     }
 
+    // Applies ratings accepted by other replicas, returns how many movies changed. Ratings of movies
+    // outside this shard are ignored, a sender with an older view of the ring may still send them.
+    public int mergeRemoteRatings(List<RatingEntry> entries) {
+        Set<Integer> changedMovies = ratingStore.merge(entries.stream()
+                .filter(entry -> ownership.owns(entry.movieId()))
+                .toList());
+        changedMovies.forEach(this::refreshRating);
+        return changedMovies.size();
+    }
+
+    // Overall rating is the average of all user ratings, the seeded rating stays until there are any.
+    // Every change to a movie and its index entries runs inside compute on its id, the map's lock for
+    // that key, so a rating refresh, a reload of the same movie and its removal cannot interleave.
+    private Movie refreshRating(int movieId) {
+        Movie movie = movies.computeIfPresent(movieId, (id, current) -> {
+            OptionalDouble average = ratingStore.averageRating(id);
+            if (average.isPresent()) {
+                ratingIndex.remove(current);
+                current.setRating((float) average.getAsDouble());
+                ratingIndex.add(current);
+            }
+            return current;
+        });
+        if (movie != null) {
+            eventPublisher.publishEvent(new MovieChangedEvent(movieId, MovieChangedEvent.Type.RATING_UPDATED));
+        }
+        return movie;
+    }
+
     public void addMovie(Movie movie) {
-        movies.put(movie.getId(), movie);
+        putAndIndex(movie);
+        eventPublisher.publishEvent(new MovieChangedEvent(movie.getId(), MovieChangedEvent.Type.MOVIE_ADDED));
+    }
+
+    // Fills the lookup map, the rating index and the search index in one parallel pass, replacing the catalog if asked to.
+    // Only this shard's movies are kept, so every shard can be sent the whole catalog.
+    public int bulkLoad(Collection<Movie> catalog, boolean replace) {
+        List<Integer> loadedIds = loadChunk(catalog);
+        completeLoad(replace ? new HashSet<>(loadedIds) : null);
+        return loadedIds.size();
+    }
+
+    // Indexes one part of a load and returns the ids of the movies this shard kept
+    public List<Integer> loadChunk(Collection<Movie> chunk) {
+        List<Movie> owned = chunk.stream().filter(movie -> ownership.owns(movie.getId())).toList();
+        owned.parallelStream().forEach(this::putAndIndex);
+        return owned.stream().map(Movie::getId).toList();
+    }
+
+    // Ends a load, dropping every movie it did not contain when given the loaded ids
+    public void completeLoad(Set<Integer> retainedIds) {
+        if (retainedIds != null) {
+            // Movies are only dropped after the new ones are in, so reads keep working during a reload
+            for (Integer movieId : movies.keySet()) {
+                if (!retainedIds.contains(movieId)) {
+                    removeMovie(movieId, id -> true);
+                }
+            }
+        }
+        eventPublisher.publishEvent(new MovieChangedEvent(0, MovieChangedEvent.Type.CATALOG_RELOADED));
+    }
+
+    // Drops the movies that moved to other shards and loads the ones this shard gained from the catalog.
+    // Ratings of dropped movies are handed to their new replicas, those of gained ones arrive by anti-entropy.
+    @EventListener
+    public void onShardRingChanged(ShardRingChangedEvent event) {
+        int dropped = 0;
+        for (Integer movieId : movies.keySet()) {
+            if (removeMovie(movieId, id -> !ownership.owns(id))) {
+                ratingStore.removeMovie(movieId);
+                dropped++;
+            }
+        }
+
+        List<Movie> gained = ownedCatalog().stream().filter(movie -> !movies.containsKey(movie.getId())).toList();
+        gained.parallelStream().forEach(this::putAndIndex);
+
+        log.info("Shard ring now has {} instances: dropped {} movies, loaded {}, holding {}",
+                event.instanceIds().size(), dropped, gained.size(), movies.size());
+        if (dropped > 0 || !gained.isEmpty()) {
+            eventPublisher.publishEvent(new MovieChangedEvent(0, MovieChangedEvent.Type.CATALOG_RELOADED));
+        }
+    }
+
+    // Removes the movie and its index entries if the condition still holds under the movie's lock
+    private boolean removeMovie(int movieId, IntPredicate condition) {
+        boolean[] removed = new boolean[1];
+        movies.computeIfPresent(movieId, (id, current) -> {
+            if (!condition.test(id)) {
+                return current;
+            }
+            ratingIndex.remove(current);
+            searchIndex.remove(id);
+            trendingEngine.remove(id);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    // A loaded movie carries its catalog rating, the average of the ratings this shard already holds replaces it
+    private void putAndIndex(Movie movie) {
+        movies.compute(movie.getId(), (id, previous) -> {
+            if (previous != null) {
+                ratingIndex.remove(previous);
+            }
+            ratingStore.averageRating(id).ifPresent(average -> movie.setRating((float) average));
+            ratingIndex.add(movie);
+            searchIndex.index(movie);
+            return movie;
+        });
     }
     
     public List<Movie> getRecommendedMoviesForUser(int userId, String preferredGenre) {
-        // Simple recommendation logic based on genre and rating
-        return movies.values().stream()
-                .filter(movie -> preferredGenre == null || movie.getGenre().equalsIgnoreCase(preferredGenre))
-                .sorted(Comparator.comparing(Movie::getRating).reversed())
-                .limit(5)
-                .collect(Collectors.toList());
+        // Movies similar to what the user rated, topped up by genre and rating for new users
+        List<Movie> recommendations = new ArrayList<>(RECOMMENDATION_COUNT);
+        Set<Integer> added = new HashSet<>();
+        for (int movieId : similarityEngine.recommend(userId, RECOMMENDATION_COUNT)) {
+            Movie movie = movies.get(movieId);
+            if (movie != null) {
+                recommendations.add(movie);
+                added.add(movieId);
+            }
+        }
+        if (recommendations.size() < RECOMMENDATION_COUNT) {
+            for (Movie movie : getTrendingMovies(RECOMMENDATION_COUNT * 2, preferredGenre)) {
+                if (recommendations.size() == RECOMMENDATION_COUNT) {
+                    break;
+                }
+                if (added.add(movie.getId())) {
+                    recommendations.add(movie);
+                }
+            }
+        }
+        return recommendations;
     }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.example.movie.movieservice.repository;
+
+import com.example.movie.movieservice.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Movie ids ordered by rating, globally and per genre, so a top-N query reads N entries
+ * instead of sorting the whole catalog. Callers must remove a movie before changing its
+ * rating or genre and add it back afterwards.
+ */
+class RatingIndex {
+
+    private record Key(float rating, int movieId) {
+    }
+
+    private static final Comparator<Key> HIGHEST_RATING_FIRST = Comparator
+            .comparing(Key::rating, Comparator.reverseOrder())
+            .thenComparingInt(Key::movieId);
+
+    private final NavigableSet<Key> all = new ConcurrentSkipListSet<>(HIGHEST_RATING_FIRST);
+    private final Map<String, NavigableSet<Key>> byGenre = new ConcurrentHashMap<>();
+
+    void add(Movie movie) {
+        Key key = new Key(movie.getRating(), movie.getId());
+        all.add(key);
+        byGenre.computeIfAbsent(genreKey(movie.getGenre()), k -> new ConcurrentSkipListSet<>(HIGHEST_RATING_FIRST))
+                .add(key);
+    }
+
+    void remove(Movie movie) {
+        Key key = new Key(movie.getRating(), movie.getId());
+        all.remove(key);
+        NavigableSet<Key> genre = byGenre.get(genreKey(movie.getGenre()));
+        if (genre != null) {
+            genre.remove(key);
+        }
+    }
+
+    // Ids of the highest rated movies, optionally within one genre (case-insensitive)
+    List<Integer> top(int limit, String genre) {
+        NavigableSet<Key> keys = genre == null || genre.isEmpty() ? all : byGenre.get(genreKey(genre));
+        List<Integer> ids = new ArrayList<>(Math.min(limit, 64));
+        if (keys == null) {
+            return ids;
+        }
+        for (Key key : keys) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(key.movieId());
+        }
+        return ids;
+    }
+
+    // Ids of every movie, highest rated first, read lazily so a caller can stop early
+    Iterable<Integer> allByRating() {
+        return () -> all.stream().map(Key::movieId).iterator();
+    }
+
+    private static String genreKey(String genre) {
+        return genre == null ? "" : genre.toLowerCase(Locale.ROOT);
+    }
+}
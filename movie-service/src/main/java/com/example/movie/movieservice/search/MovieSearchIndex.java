@@ -0,0 +1,320 @@
+package com.example.movie.movieservice.search;
+
+import com.example.movie.movieservice.model.Movie;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Inverted index over movie titles, directors and descriptions.
+ * <p>
+ * Results are ranked in tiers: all query terms in the title, then in the director, then in the
+ * description, then spread across fields. Within a tier movies are ordered by rating. Because a
+ * higher tier always outranks a lower one, search stops as soon as the limit is filled and never
+ * looks at the lower tiers' matches. A tier with many matches is read in rating order instead of
+ * being scored in full, stopping once it has enough. When the query does not end in a separator the
+ * last term is treated as a prefix, so "christopher no" finds Nolan while the user is still typing.
+ * A prefix expands to its most frequent completions, which are picked once per change to the index
+ * and cached when there are more of them than are kept.
+ */
+public class MovieSearchIndex {
+
+    private enum Field {
+        TITLE, DIRECTOR, DESCRIPTION
+    }
+
+    private record IndexedText(String title, String director, String description) {
+
+        static IndexedText of(Movie movie) {
+            return new IndexedText(movie.getTitle(), movie.getDirector(), movie.getDescription());
+        }
+
+        String get(Field field) {
+            return switch (field) {
+                case TITLE -> title;
+                case DIRECTOR -> director;
+                case DESCRIPTION -> description;
+            };
+        }
+    }
+
+    // Match, the tier it was found in (0 being the best) and its rating when it was ranked
+    public record Hit(Movie movie, int tier, float rating) {
+    }
+
+    // Ratings are updated in place on the shared Movie, so the heap orders by a copy taken on entry
+    private record Rated(Movie movie, float rating) {
+    }
+
+    // One tier per field plus the mixed-field tier
+    public static final int TIER_COUNT = Field.values().length + 1;
+
+    // Keeps a one-letter prefix from merging thousands of posting lists on the request thread,
+    // the most frequent completions are kept since rare ones seldom hold the best-rated matches
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private record Expansion(PostingList list, int size) {
+    }
+
+    // Most frequent completions of a prefix, valid while the index is still at the version they were picked at
+    private record Expansions(long version, List<PostingList> lists) {
+    }
+
+    // A step down the rating order (iterator step and binary search) costs a few heap steps
+    private static final int SCAN_FACTOR = 4;
+
+    private static final Comparator<Rated> HIGHEST_RATING_FIRST = Comparator
+            .comparing(Rated::rating, Comparator.reverseOrder())
+            .thenComparingInt(rated -> rated.movie().getId());
+
+    private final Map<Field, ConcurrentSkipListMap<String, PostingList>> postings = new EnumMap<>(Field.class);
+
+    // Text each movie was indexed with, so its old terms can be removed when it is replaced
+    private final Map<Integer, IndexedText> indexed = new ConcurrentHashMap<>();
+
+    // Only prefixes with more completions than are kept get cached, which is what makes walking them
+    // expensive; there are at most a few per MAX_PREFIX_EXPANSIONS terms, so the cache stays bounded
+    private final Map<Field, Map<String, Expansions>> expansionCache = new EnumMap<>(Field.class);
+
+    // Bumped after every change to the postings, so cached expansions are picked again once terms moved
+    private final AtomicLong version = new AtomicLong();
+
+    public MovieSearchIndex() {
+        for (Field field : Field.values()) {
+            postings.put(field, new ConcurrentSkipListMap<>());
+            expansionCache.put(field, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void index(Movie movie) {
+        IndexedText text = IndexedText.of(movie);
+        IndexedText previous = indexed.put(movie.getId(), text);
+        if (text.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            unindex(movie.getId(), previous);
+        }
+        for (Field field : Field.values()) {
+            ConcurrentSkipListMap<String, PostingList> terms = postings.get(field);
+            for (String term : Tokenizer.distinctTerms(text.get(field))) {
+                terms.computeIfAbsent(term, k -> new PostingList()).add(movie.getId());
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    public void remove(int movieId) {
+        IndexedText previous = indexed.remove(movieId);
+        if (previous != null) {
+            unindex(movieId, previous);
+            version.incrementAndGet();
+        }
+    }
+
+    // Empty lists stay in the map: dropping them could race with a concurrent add of the same term
+    private void unindex(int movieId, IndexedText text) {
+        for (Field field : Field.values()) {
+            ConcurrentSkipListMap<String, PostingList> terms = postings.get(field);
+            for (String term : Tokenizer.distinctTerms(text.get(field))) {
+                PostingList list = terms.get(term);
+                if (list != null) {
+                    list.remove(movieId);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param lookup   current movie for an id, null once it is gone
+     * @param byRating ids of every indexed movie, highest rated first
+     */
+    public List<Hit> search(String query, int limit, IntFunction<Movie> lookup, Iterable<Integer> byRating) {
+        List<String> terms = new ArrayList<>(Tokenizer.distinctTerms(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        boolean lastIsPrefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+
+        // Matches per [field][term], looked up only when a tier needs them
+        int[][][] matches = new int[Field.values().length][terms.size()][];
+
+        List<Hit> results = new ArrayList<>(limit);
+        Set<Integer> seen = new HashSet<>();
+
+        for (Field field : Field.values()) {
+            int[][] perTerm = new int[terms.size()][];
+            for (int t = 0; t < terms.size(); t++) {
+                perTerm[t] = matches(matches, field, terms, t, lastIsPrefix);
+            }
+            collectTopRated(intersect(perTerm), field.ordinal(), limit, lookup, byRating, indexed.size(), results, seen);
+            if (results.size() >= limit) {
+                return results;
+            }
+        }
+
+        // Last tier: every term appears somewhere, but not all in the same field
+        int[][] anyField = new int[terms.size()][];
+        for (int t = 0; t < terms.size(); t++) {
+            int[][] perField = new int[Field.values().length][];
+            for (Field field : Field.values()) {
+                perField[field.ordinal()] = matches(matches, field, terms, t, lastIsPrefix);
+            }
+            anyField[t] = union(Arrays.asList(perField));
+        }
+        collectTopRated(intersect(anyField), TIER_COUNT - 1, limit, lookup, byRating, indexed.size(), results, seen);
+        return results;
+    }
+
+    private int[] matches(int[][][] cache, Field field, List<String> terms, int termIndex, boolean lastIsPrefix) {
+        int[] ids = cache[field.ordinal()][termIndex];
+        if (ids == null) {
+            boolean prefix = lastIsPrefix && termIndex == terms.size() - 1;
+            ids = lookupTerm(field, terms.get(termIndex), prefix);
+            cache[field.ordinal()][termIndex] = ids;
+        }
+        return ids;
+    }
+
+    private int[] lookupTerm(Field field, String term, boolean prefix) {
+        ConcurrentSkipListMap<String, PostingList> terms = postings.get(field);
+        if (!prefix) {
+            PostingList list = terms.get(term);
+            return list != null ? list.ids() : new int[0];
+        }
+
+        // The typed word itself always counts, however rare
+        List<PostingList> completions = expansions(field, term);
+        List<int[]> lists = new ArrayList<>(completions.size() + 1);
+        PostingList exact = terms.get(term);
+        if (exact != null) {
+            lists.add(exact.ids());
+        }
+        completions.forEach(list -> lists.add(list.ids()));
+        return lists.isEmpty() ? new int[0] : union(lists);
+    }
+
+    // A short prefix can have thousands of completions, so the walk over them is done once per index
+    // version rather than on every keystroke of every user typing it
+    private List<PostingList> expansions(Field field, String prefix) {
+        Map<String, Expansions> cache = expansionCache.get(field);
+        long current = version.get();
+        Expansions cached = cache.get(prefix);
+        if (cached != null && cached.version() == current) {
+            return cached.lists();
+        }
+
+        // Sizes are read once, a list growing while the heap holds it must not reorder the heap
+        PriorityQueue<Expansion> largest = new PriorityQueue<>(Comparator.comparingInt(Expansion::size));
+        boolean truncated = false;
+        for (PostingList list : postings.get(field).subMap(prefix, false, prefix + Character.MAX_VALUE, false).values()) {
+            largest.add(new Expansion(list, list.size()));
+            if (largest.size() > MAX_PREFIX_EXPANSIONS) {
+                largest.poll();
+                truncated = true;
+            }
+        }
+
+        List<PostingList> lists = largest.stream().map(Expansion::list).toList();
+        if (truncated) {
+            cache.put(prefix, new Expansions(current, lists));
+        } else if (cached != null) {
+            cache.remove(prefix);
+        }
+        return lists;
+    }
+
+    // Adds the best-rated candidates of one tier, skipping movies an earlier tier returned
+    private static void collectTopRated(int[] candidates, int tierIndex, int limit, IntFunction<Movie> lookup,
+                                        Iterable<Integer> byRating, int indexedCount, List<Hit> results, Set<Integer> seen) {
+        int remaining = limit - results.size();
+        if (candidates.length == 0 || remaining <= 0) {
+            return;
+        }
+        // A tier matching one movie in n finds its best after about remaining * n steps down the rating
+        // order, far fewer than there are candidates when it is a common word or a short prefix
+        if ((long) candidates.length * candidates.length > (long) remaining * SCAN_FACTOR * indexedCount) {
+            collectByRating(candidates, tierIndex, remaining, lookup, byRating, results, seen);
+            return;
+        }
+
+        PriorityQueue<Rated> best = new PriorityQueue<>(remaining + 1, HIGHEST_RATING_FIRST.reversed());
+        for (int id : candidates) {
+            if (seen.contains(id)) {
+                continue;
+            }
+            Movie movie = lookup.apply(id);
+            if (movie == null) {
+                continue;
+            }
+            Rated rated = new Rated(movie, movie.getRating());
+            if (best.size() < remaining) {
+                best.add(rated);
+            } else if (HIGHEST_RATING_FIRST.compare(rated, best.peek()) < 0) {
+                best.poll();
+                best.add(rated);
+            }
+        }
+
+        List<Rated> tier = new ArrayList<>(best);
+        tier.sort(HIGHEST_RATING_FIRST);
+        for (Rated rated : tier) {
+            results.add(new Hit(rated.movie(), tierIndex, rated.rating()));
+            seen.add(rated.movie().getId());
+        }
+    }
+
+    // Walks the movies from the highest rated down and stops at the remaining-th candidate
+    private static void collectByRating(int[] candidates, int tierIndex, int remaining, IntFunction<Movie> lookup,
+                                        Iterable<Integer> byRating, List<Hit> results, Set<Integer> seen) {
+        for (int id : byRating) {
+            if (Arrays.binarySearch(candidates, id) < 0 || seen.contains(id)) {
+                continue;
+            }
+            Movie movie = lookup.apply(id);
+            if (movie == null) {
+                continue;
+            }
+            results.add(new Hit(movie, tierIndex, movie.getRating()));
+            seen.add(id);
+            if (--remaining == 0) {
+                return;
+            }
+        }
+    }
+
+    // Intersects sorted id arrays, starting from the shortest and binary-searching the others
+    private static int[] intersect(int[][] lists) {
+        int[][] sorted = lists.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(list -> list.length));
+
+        int[] result = sorted[0];
+        for (int i = 1; i < sorted.length && result.length > 0; i++) {
+            int[] other = sorted[i];
+            int[] kept = new int[result.length];
+            int count = 0;
+            int from = 0;
+            for (int id : result) {
+                int index = Arrays.binarySearch(other, from, other.length, id);
+                if (index >= 0) {
+                    kept[count++] = id;
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            result = Arrays.copyOf(kept, count);
+        }
+        return result;
+    }
+
+    private static int[] union(List<int[]> lists) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        return lists.stream().flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.movie.movieservice.search;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sorted set of movie ids stored as variable-length deltas, which takes one or two bytes per id
+ * for dense lists instead of the 16+ bytes of a boxed Integer in a set.
+ * <p>
+ * Ids larger than the last one are appended in place. Other changes (out-of-order ids from
+ * parallel bulk loads, removals of re-indexed or dropped movies) are buffered and merged in one
+ * linear pass per batch, so building or thinning a list stays O(n log n) overall. Readers never
+ * lock: they read an immutable snapshot whose bytes are not modified afterwards, and the decoded
+ * ids of the latest snapshot are kept until the list changes or memory runs short.
+ */
+final class PostingList {
+
+    private record Encoded(byte[] data, int length, int size, int last) {
+    }
+
+    private record Decoded(Encoded source, int[] ids) {
+    }
+
+    private static final Encoded EMPTY = new Encoded(new byte[0], 0, 0, 0);
+    private static final int MIN_PENDING_BEFORE_MERGE = 1024;
+
+    private volatile Encoded encoded = EMPTY;
+    private volatile boolean hasPending;
+    private volatile SoftReference<Decoded> decoded = new SoftReference<>(null);
+
+    // Guarded by this: changes not merged yet, id -> whether it ends up in the list (the last change wins)
+    private final Map<Integer, Boolean> pending = new HashMap<>();
+
+    synchronized void add(int id) {
+        Encoded current = encoded;
+        if (!hasPending && (current.size == 0 || id > current.last)) {
+            encoded = append(current, id);
+            return;
+        }
+        buffer(id, true);
+    }
+
+    synchronized void remove(int id) {
+        buffer(id, false);
+    }
+
+    // Sorted ids, shared with other readers so callers must not modify the array
+    int[] ids() {
+        if (hasPending) {
+            synchronized (this) {
+                mergePending();
+            }
+        }
+        Encoded current = encoded;
+        Decoded cached = decoded.get();
+        if (cached != null && cached.source() == current) {
+            return cached.ids();
+        }
+        int[] ids = decode(current);
+        decoded = new SoftReference<>(new Decoded(current, ids));
+        return ids;
+    }
+
+    // Number of ids as of the last merge, exact unless changes are buffered
+    int size() {
+        return encoded.size;
+    }
+
+    boolean isEmpty() {
+        return encoded.size == 0 && !hasPending;
+    }
+
+    private void buffer(int id, boolean present) {
+        pending.put(id, present);
+        hasPending = true;
+        if (pending.size() >= Math.max(MIN_PENDING_BEFORE_MERGE, encoded.size / 8)) {
+            mergePending();
+        }
+    }
+
+    private void mergePending() {
+        if (!hasPending) {
+            return;
+        }
+        int[] added = pending.entrySet().stream().filter(Map.Entry::getValue).mapToInt(Map.Entry::getKey).sorted().toArray();
+        int[] removed = pending.entrySet().stream().filter(e -> !e.getValue()).mapToInt(Map.Entry::getKey).sorted().toArray();
+        int[] current = decode(encoded);
+
+        // One pass over three sorted arrays: keep current ids that were not removed, interleave the added ones
+        int[] merged = new int[current.length + added.length];
+        int count = 0;
+        int c = 0;
+        int a = 0;
+        int r = 0;
+        while (c < current.length || a < added.length) {
+            int next;
+            if (a == added.length || (c < current.length && current[c] < added[a])) {
+                next = current[c++];
+                while (r < removed.length && removed[r] < next) {
+                    r++;
+                }
+                if (r < removed.length && removed[r] == next) {
+                    continue;
+                }
+            } else {
+                next = added[a++];
+            }
+            if (count == 0 || merged[count - 1] != next) {
+                merged[count++] = next;
+            }
+        }
+
+        encoded = encode(merged, count);
+        pending.clear();
+        hasPending = false;
+    }
+
+    // Bytes past the old length are written into the shared array, which older snapshots never read
+    private static Encoded append(Encoded current, int id) {
+        byte[] data = current.data;
+        if (data.length - current.length < 5) {
+            data = Arrays.copyOf(data, Math.max(16, data.length * 2));
+        }
+        long value = current.size == 0 ? zigZag(id) : (long) id - current.last;
+        int length = writeVarint(data, current.length, value);
+        return new Encoded(data, length, current.size + 1, id);
+    }
+
+    private static Encoded encode(int[] ids, int count) {
+        Encoded result = EMPTY;
+        for (int i = 0; i < count; i++) {
+            result = append(result, ids[i]);
+        }
+        return result;
+    }
+
+    private static int[] decode(Encoded encoded) {
+        int[] ids = new int[encoded.size];
+        byte[] data = encoded.data;
+        int position = 0;
+        long previous = 0;
+        for (int i = 0; i < encoded.size; i++) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            previous = i == 0 ? unZigZag(value) : previous + value;
+            ids[i] = (int) previous;
+        }
+        return ids;
+    }
+
+    private static int writeVarint(byte[] data, int position, long value) {
+        while ((value & ~0x7fL) != 0) {
+            data[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+
+    private static long zigZag(int value) {
+        return ((long) value << 1) ^ ((long) value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
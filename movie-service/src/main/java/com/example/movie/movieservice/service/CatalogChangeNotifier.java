@@ -0,0 +1,114 @@
+package com.example.movie.movieservice.service;
+
+import com.example.movie.movieservice.event.MovieChangedEvent;
+import com.example.movie.movieservice.proto.CatalogChange;
+import io.grpc.stub.ServerCallStreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fans MovieChangedEvents out to every open WatchCatalogChanges stream.
+ * <p>
+ * Changes are only written while the watcher's transport is ready. Until then they wait per watcher,
+ * coalesced by movie id, and past {@link #MAX_PENDING_PER_WATCHER} they collapse into a single
+ * CATALOG_RELOADED, so a slow gateway costs a bounded amount of memory and one full invalidation.
+ */
+@Component
+@Slf4j
+public class CatalogChangeNotifier {
+
+    private static final int MAX_PENDING_PER_WATCHER = 1024;
+
+    private static final CatalogChange RESYNC = CatalogChange.newBuilder()
+            .setChangeType(CatalogChange.ChangeType.CATALOG_RELOADED)
+            .build();
+
+    private static final class Watcher {
+
+        final ServerCallStreamObserver<CatalogChange> stream;
+
+        // Guarded by this: changes not yet written, a later change to a movie replaces the earlier one
+        final Map<Integer, CatalogChange> pending = new LinkedHashMap<>();
+        boolean resync;
+
+        Watcher(ServerCallStreamObserver<CatalogChange> stream) {
+            this.stream = stream;
+        }
+    }
+
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+
+    // Must be called from the WatchCatalogChanges handler, gRPC only accepts the handlers before it returns
+    public void register(ServerCallStreamObserver<CatalogChange> stream) {
+        Watcher watcher = new Watcher(stream);
+        watchers.add(watcher);
+        stream.setOnReadyHandler(() -> drain(watcher));
+        stream.setOnCancelHandler(() -> {
+            watchers.remove(watcher);
+            log.info("Catalog change watcher disconnected, {} remaining", watchers.size());
+        });
+        log.info("Catalog change watcher connected, {} active", watchers.size());
+    }
+
+    @EventListener
+    public void onMovieChanged(MovieChangedEvent event) {
+        if (watchers.isEmpty()) {
+            return;
+        }
+
+        CatalogChange change = CatalogChange.newBuilder()
+                .setMovieId(event.movieId())
+                .setChangeType(switch (event.type()) {
+                    case MOVIE_ADDED -> CatalogChange.ChangeType.MOVIE_ADDED;
+                    case CATALOG_RELOADED -> CatalogChange.ChangeType.CATALOG_RELOADED;
+                    default -> CatalogChange.ChangeType.RATING_UPDATED;
+                })
+                .build();
+
+        for (Watcher watcher : watchers) {
+            synchronized (watcher) {
+                if (change.getChangeType() == CatalogChange.ChangeType.CATALOG_RELOADED
+                        || watcher.pending.size() >= MAX_PENDING_PER_WATCHER) {
+                    watcher.pending.clear();
+                    watcher.resync = true;
+                } else if (!watcher.resync) {
+                    // Re-inserted so the movie moves to the end, behind changes that happened before it
+                    watcher.pending.remove(change.getMovieId());
+                    watcher.pending.put(change.getMovieId(), change);
+                }
+            }
+            drain(watcher);
+        }
+    }
+
+    // Stream observers are not thread-safe, and events arrive from many handler threads
+    private void drain(Watcher watcher) {
+        synchronized (watcher) {
+            if (watcher.stream.isCancelled()) {
+                watchers.remove(watcher);
+                return;
+            }
+            try {
+                if (watcher.resync && watcher.stream.isReady()) {
+                    watcher.stream.onNext(RESYNC);
+                    watcher.resync = false;
+                }
+                Iterator<CatalogChange> changes = watcher.pending.values().iterator();
+                while (!watcher.resync && changes.hasNext() && watcher.stream.isReady()) {
+                    watcher.stream.onNext(changes.next());
+                    changes.remove();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Dropping catalog change watcher: {}", e.getMessage());
+                watchers.remove(watcher);
+            }
+        }
+    }
+}
@@ -1,16 +1,34 @@
 package com.example.movie.movieservice.service;
 
+import com.example.movie.common.batch.BatchBudget;
+import com.example.movie.common.batch.StringDictionary;
 import com.example.movie.movieservice.proto.*;
+import com.example.movie.movieservice.loader.StringInterner;
 import com.example.movie.movieservice.model.Movie;
+import com.example.movie.movieservice.replication.RatingDeltaCodec;
+import com.example.movie.movieservice.replication.RatingDigests;
 import com.example.movie.movieservice.repository.MovieRepository;
+import com.example.movie.movieservice.search.MovieSearchIndex;
+import com.example.movie.movieservice.trending.TrendingSignal;
+import com.google.protobuf.CodedOutputStream;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.grpc.server.service.GrpcService;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @RequiredArgsConstructor
@@ -19,6 +37,24 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
     
     private final MovieRepository movieRepository;
+    private final CatalogChangeNotifier catalogChangeNotifier;
+    private final StringInterner stringInterner;
+    private final RatingDigests ratingDigests;
+    
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int MAX_BATCHED_TRENDING_LIMIT = 100;
+    
+    // Applies bulk loads one chunk at a time, additive uploads that overlap are applied in arrival order
+    private final ExecutorService bulkLoadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bulk-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Additive uploads in progress, or REPLACE_IN_PROGRESS while a replace runs. A replace drops every movie
+    // it did not load itself, so it must not overlap any other upload.
+    private static final int REPLACE_IN_PROGRESS = -1;
+    private final AtomicInteger activeBulkLoads = new AtomicInteger();
     
     // Store user preferences for recommendation
     private final Map<Integer, String> userPreferredGenres = new ConcurrentHashMap<>();
@@ -27,7 +63,7 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
     @Override
     public void getMovie(MovieRequest request, StreamObserver<MovieResponse> responseObserver) {
         int movieId = request.getMovieId();
-        log.info("Received request for movie with ID: {}", movieId);
+        log.debug("Received request for movie with ID: {}", movieId);
         
         Movie movie = movieRepository.getMovieById(movieId);
         if (movie != null) {
@@ -36,7 +72,7 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
             responseObserver.onCompleted();
         } else {
             log.warn("Movie with ID {} not found", movieId);
-            responseObserver.onError(new RuntimeException("Movie not found"));
+            responseObserver.onError(Status.NOT_FOUND.withDescription("Movie not found").asRuntimeException());
         }
     }
 
@@ -46,12 +82,15 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
         int limit = request.getLimit() > 0 ? request.getLimit() : 10; // Default to 10
         String genre = request.getGenre().isEmpty() ? null : request.getGenre();
         
-        log.info("Streaming trending movies. Limit: {}, Genre: {}", limit, genre);
+        log.info("Streaming trending movies. Limit: {}, Genre: {}, Mode: {}", limit, genre, request.getMode());
         
-        List<Movie> trendingMovies = movieRepository.getTrendingMovies(limit, genre);
+        List<Movie> trendingMovies = findTrending(request, limit, genre);
+        boolean trendingNow = request.getMode() == TrendingMoviesRequest.TrendingMode.TRENDING_NOW;
         
         for (Movie movie : trendingMovies) {
-            responseObserver.onNext(buildMovieResponse(movie));
+            // Clients merge the rows of all shards by score
+            float score = trendingNow ? (float) movieRepository.trendingScore(movie.getId()) : movie.getRating();
+            responseObserver.onNext(buildMovieResponse(movie, score));
             
             // Simulate some delay for streaming
             try {
@@ -64,6 +103,69 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    // Server Streaming RPC: Same rows as GetTrendingMovies, packed into byte-budgeted batches and sent as fast as the caller reads them
+    @Override
+    public void getTrendingMoviesBatched(BatchedTrendingMoviesRequest request, StreamObserver<MovieBatch> responseObserver) {
+        TrendingMoviesRequest query = request.getRequest();
+        int limit = query.getLimit() > 0 ? Math.min(query.getLimit(), MAX_BATCHED_TRENDING_LIMIT) : 10; // Default to 10
+        String genre = query.getGenre().isEmpty() ? null : query.getGenre();
+
+        ServerCallStreamObserver<MovieBatch> serverObserver = (ServerCallStreamObserver<MovieBatch>) responseObserver;
+        if (request.getGzip()) {
+            serverObserver.setCompression("gzip");
+        }
+
+        List<Movie> trendingMovies = findTrending(query, limit, genre);
+        log.debug("Streaming {} trending movies in batches. Genre: {}, gzip: {}", trendingMovies.size(), genre, request.getGzip());
+
+        Iterator<MovieBatch> batches = packTrending(trendingMovies, request.getMaxBatchBytes()).iterator();
+        AtomicBoolean completed = new AtomicBoolean();
+
+        serverObserver.setOnReadyHandler(() -> {
+            while (serverObserver.isReady() && batches.hasNext()) {
+                responseObserver.onNext(batches.next());
+            }
+            if (!batches.hasNext() && completed.compareAndSet(false, true)) {
+                responseObserver.onCompleted();
+            }
+        });
+    }
+
+    // The limit is capped, so every batch is packed up front and only sending waits for the caller
+    private List<MovieBatch> packTrending(List<Movie> trendingMovies, int maxBatchBytes) {
+        List<MovieBatch> batches = new ArrayList<>();
+        BatchBudget budget = new BatchBudget(maxBatchBytes);
+        StringDictionary dictionary = new StringDictionary();
+        MovieBatch.Builder batch = MovieBatch.newBuilder();
+        int rowBytes = 0;
+
+        for (Movie movie : trendingMovies) {
+            PackedMovie row = PackedMovie.newBuilder()
+                    .setMovieId(movie.getId())
+                    .setTitle(movie.getTitle())
+                    .setDescription(movie.getDescription())
+                    .setRating(movie.getRating())
+                    .setGenreRef(dictionary.ref(movie.getGenre()))
+                    .setYear(movie.getYear())
+                    .setDirectorRef(dictionary.ref(movie.getDirector()))
+                    .build();
+            batch.addMovies(row);
+            rowBytes += CodedOutputStream.computeMessageSize(2, row);
+
+            if (budget.isFull(rowBytes + dictionary.unsentBytes())) {
+                batches.add(batch.addAllNewStrings(dictionary.drainUnsent()).build());
+                batch.clear();
+                rowBytes = 0;
+                budget.grow();
+            }
+        }
+
+        if (batch.getMoviesCount() > 0) {
+            batches.add(batch.addAllNewStrings(dictionary.drainUnsent()).build());
+        }
+        return batches;
+    }
+
     // Client Streaming RPC: Updates multiple movie ratings in batch
     @Override
     public StreamObserver<UpdateRatingRequest> updateMovieRatings(StreamObserver<UpdateRatingBatchResponse> responseObserver) {
@@ -117,18 +219,26 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
                 int movieId = request.getMovieId();
                 UserEventRequest.EventType eventType = request.getEventType();
                 
-                log.info("Received event from user ID: {}, movie ID: {}, event type: {}", 
+                log.debug("Received event from user ID: {}, movie ID: {}, event type: {}", 
                         userId, movieId, eventType);
                 
-                // Update user preferences based on interaction
+                // Update user preferences based on interaction. The movie lives on its own shard, the
+                // other shards are only asked for recommendations (recommend_only) in the movie's genre.
                 Movie movie = movieRepository.getMovieById(movieId);
-                if (movie != null) {
+                String genre = movie != null ? movie.getGenre() : request.getGenre();
+                if (movie != null && !request.getRecommendOnly()) {
+                    if (eventType == UserEventRequest.EventType.WATCH || eventType == UserEventRequest.EventType.VIEW) {
+                        movieRepository.recordInteraction(movie, eventType == UserEventRequest.EventType.WATCH
+                                ? TrendingSignal.WATCH : TrendingSignal.VIEW);
+                    }
+                    
                     // For simplicity, just use the genre of the movie the user interacted with
                     userPreferredGenres.put(userId, movie.getGenre());
-                    
+                }
+                if (movie != null || !genre.isEmpty()) {
                     // Get recommendations based on updated preferences
                     List<Movie> recommendations = movieRepository.getRecommendedMoviesForUser(
-                            userId, userPreferredGenres.get(userId));
+                            userId, request.getRecommendOnly() ? genre : userPreferredGenres.getOrDefault(userId, genre));
                     
                     for (Movie recommendedMovie : recommendations) {
                         float confidenceScore = calculateConfidenceScore(recommendedMovie, userId, eventType);
@@ -154,13 +264,220 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
 
             @Override
             public void onCompleted() {
-                log.info("Completed personalized recommendations stream");
+                log.debug("Completed personalized recommendations stream");
                 responseObserver.onCompleted();
             }
         };
     }
     
+    // Server Streaming RPC: Streams rating and catalog changes until the client cancels
+    @Override
+    public void watchCatalogChanges(WatchCatalogChangesRequest request, StreamObserver<CatalogChange> responseObserver) {
+        log.info("Registering catalog change watcher");
+        catalogChangeNotifier.register((ServerCallStreamObserver<CatalogChange>) responseObserver);
+    }
+    
+    // Client Streaming RPC: Receives rating deltas from other movie-service replicas
+    @Override
+    public StreamObserver<RatingDeltaBatch> syncRatings(StreamObserver<SyncRatingsResponse> responseObserver) {
+        final AtomicInteger appliedCount = new AtomicInteger(0);
+        
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(RatingDeltaBatch batch) {
+                int changed = movieRepository.mergeRemoteRatings(RatingDeltaCodec.decode(batch));
+                appliedCount.addAndGet(batch.getDeltasCount());
+                log.debug("Merged {} rating deltas from replica {}, {} movies changed",
+                        batch.getDeltasCount(), batch.getSenderReplicaId(), changed);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Rating sync stream closed by peer: {}", t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(SyncRatingsResponse.newBuilder()
+                        .setAppliedCount(appliedCount.get())
+                        .build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+    
+    // Server Streaming RPC: Sends this replica's ratings where the caller's digests differ, as fast as the caller reads them
+    @Override
+    public void pullRatings(RatingDigestRequest request, StreamObserver<RatingDeltaBatch> responseObserver) {
+        ServerCallStreamObserver<RatingDeltaBatch> serverObserver = (ServerCallStreamObserver<RatingDeltaBatch>) responseObserver;
+        Iterator<RatingDeltaBatch> batches = ratingDigests.differences(request);
+        AtomicBoolean completed = new AtomicBoolean();
+
+        serverObserver.setOnCancelHandler(() -> log.debug("Replica {} cancelled its rating pull", request.getSenderReplicaId()));
+        serverObserver.setOnReadyHandler(() -> {
+            while (serverObserver.isReady() && batches.hasNext()) {
+                responseObserver.onNext(batches.next());
+            }
+            if (!batches.hasNext() && completed.compareAndSet(false, true)) {
+                responseObserver.onCompleted();
+            }
+        });
+    }
+    
+    // Client Streaming RPC: Reloads the catalog from streamed chunks. Each chunk is indexed as it arrives on the
+    // bulk-load thread and the next one is only requested after that, so the upload is never buffered whole and
+    // handler threads never run the indexing. A replace drops the movies the load did not contain once it completes,
+    // so it is refused with ABORTED while any other upload runs, and other uploads are refused while it runs.
+    @Override
+    public StreamObserver<BulkLoadMoviesRequest> bulkLoadMovies(StreamObserver<BulkLoadMoviesResponse> responseObserver) {
+        ServerCallStreamObserver<BulkLoadMoviesResponse> serverObserver = (ServerCallStreamObserver<BulkLoadMoviesResponse>) responseObserver;
+        serverObserver.disableAutoRequest();
+        serverObserver.request(1);
+
+        return new StreamObserver<>() {
+            // Only touched on the bulk-load thread
+            private Set<Integer> loadedIds;
+            private int loaded;
+            private boolean first = true;
+            // Only touched by the call's own callbacks
+            private boolean admitted;
+            private boolean rejected;
+
+            @Override
+            public void onNext(BulkLoadMoviesRequest request) {
+                if (rejected) {
+                    return;
+                }
+                if (!admitted) {
+                    if (!admitBulkLoad(request.getReplaceCatalog())) {
+                        rejected = true;
+                        responseObserver.onError(Status.ABORTED
+                                .withDescription("Another bulk load is in progress and a catalog replace cannot overlap it")
+                                .asRuntimeException());
+                        return;
+                    }
+                    admitted = true;
+                }
+                List<Movie> chunk = new ArrayList<>(request.getMoviesCount());
+                for (MovieResponse movie : request.getMoviesList()) {
+                    chunk.add(Movie.builder()
+                            .id(movie.getMovieId())
+                            .title(movie.getTitle())
+                            .description(movie.getDescription())
+                            .rating(movie.getRating())
+                            .genre(stringInterner.intern(movie.getGenre()))
+                            .year(movie.getYear())
+                            .director(stringInterner.intern(movie.getDirector()))
+                            .build());
+                }
+                bulkLoadExecutor.execute(() -> {
+                    if (first) {
+                        first = false;
+                        loadedIds = request.getReplaceCatalog() ? new HashSet<>() : null;
+                    }
+                    List<Integer> ids = movieRepository.loadChunk(chunk);
+                    loaded += ids.size();
+                    if (loadedIds != null) {
+                        loadedIds.addAll(ids);
+                    }
+                    serverObserver.request(1);
+                });
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (rejected) {
+                    return;
+                }
+                boolean release = admitted;
+                bulkLoadExecutor.execute(() -> {
+                    log.error("Bulk load aborted by client after {} movies, they stay loaded and nothing is dropped", loaded, t);
+                    if (release) {
+                        releaseBulkLoad(loadedIds != null);
+                    }
+                });
+            }
+
+            @Override
+            public void onCompleted() {
+                if (rejected) {
+                    return;
+                }
+                boolean release = admitted;
+                bulkLoadExecutor.execute(() -> {
+                    movieRepository.completeLoad(loadedIds);
+                    if (release) {
+                        releaseBulkLoad(loadedIds != null);
+                    }
+                    log.info("Bulk loaded {} movies (replace catalog: {})", loaded, loadedIds != null);
+
+                    responseObserver.onNext(BulkLoadMoviesResponse.newBuilder()
+                            .setLoadedCount(loaded)
+                            .setSuccess(loaded > 0)
+                            .build());
+                    responseObserver.onCompleted();
+                });
+            }
+        };
+    }
+    
+    private boolean admitBulkLoad(boolean replace) {
+        if (replace) {
+            return activeBulkLoads.compareAndSet(0, REPLACE_IN_PROGRESS);
+        }
+        while (true) {
+            int active = activeBulkLoads.get();
+            if (active == REPLACE_IN_PROGRESS) {
+                return false;
+            }
+            if (activeBulkLoads.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseBulkLoad(boolean replace) {
+        if (replace) {
+            activeBulkLoads.set(0);
+        } else {
+            activeBulkLoads.decrementAndGet();
+        }
+    }
+    
+    // Server Streaming RPC: Streams search matches, best first
+    @Override
+    public void searchMovies(SearchMoviesRequest request, StreamObserver<MovieResponse> responseObserver) {
+        int limit = request.getLimit() > 0 ? Math.min(request.getLimit(), MAX_SEARCH_LIMIT) : 10; // Default to 10
+        log.debug("Searching movies. Query: '{}', Limit: {}", request.getQuery(), limit);
+
+        ServerCallStreamObserver<MovieResponse> serverObserver = (ServerCallStreamObserver<MovieResponse>) responseObserver;
+        for (MovieSearchIndex.Hit hit : movieRepository.searchMovies(request.getQuery(), limit)) {
+            if (serverObserver.isCancelled()) {
+                return; // Type-ahead clients cancel superseded queries
+            }
+            // Any better tier outranks any rating (at most 10), so merged shard results keep the tier order
+            float score = (MovieSearchIndex.TIER_COUNT - hit.tier()) * 100 + hit.rating();
+            responseObserver.onNext(buildMovieResponse(hit.movie(), score));
+        }
+        responseObserver.onCompleted();
+    }
+    
+    private List<Movie> findTrending(TrendingMoviesRequest request, int limit, String genre) {
+        return request.getMode() == TrendingMoviesRequest.TrendingMode.TRENDING_NOW
+                ? movieRepository.getTrendingNowMovies(limit, genre)
+                : movieRepository.getTrendingMovies(limit, genre);
+    }
+    
+    @PreDestroy
+    public void close() {
+        bulkLoadExecutor.shutdown();
+    }
+    
     private MovieResponse buildMovieResponse(Movie movie) {
+        return buildMovieResponse(movie, 0);
+    }
+    
+    private MovieResponse buildMovieResponse(Movie movie, float score) {
         return MovieResponse.newBuilder()
                 .setMovieId(movie.getId())
                 .setTitle(movie.getTitle())
@@ -169,6 +486,7 @@ public class MovieServiceImpl extends MovieServiceGrpc.MovieServiceImplBase {
                 .setGenre(movie.getGenre())
                 .setYear(movie.getYear())
                 .setDirector(movie.getDirector())
+                .setScore(score)
                 .build();
     }
     
@@ -0,0 +1,161 @@
+package com.example.movie.movieservice.sharding;
+
+import com.example.movie.common.sharding.ConsistentHashRing;
+import com.example.movie.movieservice.event.ShardRingChangedEvent;
+import com.netflix.appinfo.EurekaInstanceConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntPredicate;
+
+/**
+ * This instance's share of the movie-id hash ring. The ring is built from the movie-service
+ * instances registered in Eureka plus this one (which is not listed while it is still warming up),
+ * each placed with the virtual-node count it advertises in its metadata. Clients build the same
+ * ring and route a movie to its owner; the owner and the next replication-factor - 1 instances
+ * clockwise hold the movie and its ratings.
+ * <p>
+ * When instances join or leave, a {@link ShardRingChangedEvent} is published on a background
+ * thread so the repository can drop the movies it no longer holds and load the ones it gained.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardOwnership {
+
+    private static final String SERVICE_ID = "movie-service";
+    private static final String VIRTUAL_NODES_METADATA = "shard.virtual-nodes";
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    // Ring of instance ids, the virtual-node count of each member and the gRPC address of the others
+    private record Topology(ConsistentHashRing<String> ring, Map<String, Integer> members, Map<String, String> peers) {
+    }
+
+    private final DiscoveryClient discoveryClient;
+    private final EurekaInstanceConfig instanceConfig;
+    private final ShardingProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService rebalancer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-rebalance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Topology topology;
+
+    public ShardOwnership(DiscoveryClient discoveryClient, EurekaInstanceConfig instanceConfig,
+                          ShardingProperties properties, ApplicationEventPublisher eventPublisher) {
+        this.discoveryClient = discoveryClient;
+        this.instanceConfig = instanceConfig;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.topology = buildTopology();
+        log.info("Instance {} starts with movie-service shards {} (replication factor {}, sharding {})",
+                selfId(), topology.members().keySet(), properties.getReplicationFactor(),
+                properties.isEnabled() ? "on" : "off");
+    }
+
+    public String selfId() {
+        return instanceConfig.getInstanceId();
+    }
+
+    // Whether this instance is one of the movie's replicas
+    public boolean owns(int movieId) {
+        return !properties.isEnabled() || replicasOf(movieId).contains(selfId());
+    }
+
+    // Instance ids holding the movie, its owner first
+    public List<String> replicasOf(int movieId) {
+        Topology current = topology;
+        if (!properties.isEnabled()) {
+            return List.copyOf(current.members().keySet());
+        }
+        return current.ring().nodesFor(movieId, Math.max(properties.getReplicationFactor(), 1));
+    }
+
+    // Other registered movie-service instances, instance id -> gRPC address
+    public Map<String, String> peers() {
+        return topology.peers();
+    }
+
+    public int selfVirtualNodes() {
+        return virtualNodes(instanceConfig.getMetadataMap());
+    }
+
+    public int virtualNodesOf(String instanceId) {
+        return topology.members().getOrDefault(instanceId, DEFAULT_VIRTUAL_NODES);
+    }
+
+    // Movies both this instance and the peer hold. A peer that is not registered yet (still warming up)
+    // is placed on a copy of the ring, so it can pull the ratings of its future share before taking traffic.
+    public IntPredicate sharedWith(String peerId, int peerVirtualNodes) {
+        if (!properties.isEnabled()) {
+            return movieId -> true;
+        }
+        Topology current = topology;
+        ConsistentHashRing<String> ring = current.ring();
+        if (!current.members().containsKey(peerId)) {
+            Map<String, Integer> members = new HashMap<>(current.members());
+            members.put(peerId, peerVirtualNodes);
+            Map<String, String> nodes = new HashMap<>();
+            members.keySet().forEach(id -> nodes.put(id, id));
+            ring = ConsistentHashRing.of(nodes, members);
+        }
+        ConsistentHashRing<String> placed = ring;
+        int replicas = Math.max(properties.getReplicationFactor(), 1);
+        return movieId -> {
+            List<String> holders = placed.nodesFor(movieId, replicas);
+            return holders.contains(peerId) && holders.contains(selfId());
+        };
+    }
+
+    // Eureka refreshes its registry periodically, the ring only changes when membership does
+    @EventListener(HeartbeatEvent.class)
+    public void refresh() {
+        Topology rebuilt = buildTopology();
+        Topology previous = topology;
+        topology = rebuilt;
+        if (!rebuilt.members().equals(previous.members())) {
+            log.info("movie-service shards changed from {} to {}", previous.members().keySet(), rebuilt.members().keySet());
+            Set<String> members = Set.copyOf(rebuilt.members().keySet());
+            rebalancer.execute(() -> eventPublisher.publishEvent(new ShardRingChangedEvent(members)));
+        }
+    }
+
+    private Topology buildTopology() {
+        Map<String, Integer> members = new HashMap<>();
+        Map<String, String> peers = new HashMap<>();
+        for (ServiceInstance instance : discoveryClient.getInstances(SERVICE_ID)) {
+            members.put(instance.getInstanceId(), virtualNodes(instance.getMetadata()));
+            if (!instance.getInstanceId().equals(selfId())) {
+                String grpcPort = instance.getMetadata().get("gRPC.port");
+                peers.put(instance.getInstanceId(), instance.getHost() + ":" + (grpcPort != null ? grpcPort : "9090"));
+            }
+        }
+        members.put(selfId(), virtualNodes(instanceConfig.getMetadataMap()));
+
+        Map<String, String> nodes = new HashMap<>();
+        members.keySet().forEach(id -> nodes.put(id, id));
+        return new Topology(ConsistentHashRing.of(nodes, members), Map.copyOf(members), Map.copyOf(peers));
+    }
+
+    private static int virtualNodes(Map<String, String> metadata) {
+        String count = metadata.get(VIRTUAL_NODES_METADATA);
+        return count != null ? Integer.parseInt(count) : DEFAULT_VIRTUAL_NODES;
+    }
+
+    @PreDestroy
+    public void close() {
+        rebalancer.shutdownNow();
+    }
+}
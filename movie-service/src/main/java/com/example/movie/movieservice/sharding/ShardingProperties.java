@@ -0,0 +1,15 @@
+package com.example.movie.movieservice.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    // Off: every instance holds the whole catalog and replicates every rating to every other instance
+    private boolean enabled = true;
+
+    // Instances holding each movie: its owner on the hash ring and the next ones clockwise
+    private int replicationFactor = 2;
+}
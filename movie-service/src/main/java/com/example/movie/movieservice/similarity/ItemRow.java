@@ -0,0 +1,135 @@
+package com.example.movie.movieservice.similarity;
+
+import java.util.Arrays;
+
+/**
+ * One movie's row of the co-rating matrix: for each other movie, the dot product of the two rating
+ * vectors and the number of users who rated both. Stored in open-addressing primitive arrays rather
+ * than a map of boxed values. Writes are guarded by the engine, the neighbor list is read lock-free.
+ */
+final class ItemRow {
+
+    // Per slot of the open-addressing arrays: key, dot and count. Tables stay at no more than half load.
+    static final int BYTES_PER_SLOT = Integer.BYTES + Float.BYTES + Integer.BYTES;
+
+    interface CellConsumer {
+        void accept(int movieId, float dot, int count);
+    }
+
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private float[] dots;
+    private int[] counts;
+    private int size;
+
+    // Sum of squared ratings of this movie, the other half of the cosine denominator
+    double normSquared;
+
+    private volatile Neighbor[] neighbors = new Neighbor[0];
+
+    ItemRow(int expectedCells) {
+        allocate(Integer.highestOneBit(Math.max(expectedCells, 2) * 2 - 1) << 1);
+    }
+
+    // Most cells a row can be built with without allocating more than the given number of slots
+    static int cellsFitting(long slots) {
+        return Integer.highestOneBit((int) Math.min(Math.max(slots, 4), 1 << 30)) / 2;
+    }
+
+    // Adds to a cell, creating it only when allowed; returns true if a cell was created
+    boolean add(int movieId, float dotDelta, int countDelta, boolean mayCreate) {
+        int slot = slotOf(movieId);
+        if (keys[slot] == movieId) {
+            dots[slot] += dotDelta;
+            counts[slot] += countDelta;
+            return false;
+        }
+        if (!mayCreate) {
+            return false;
+        }
+
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+            slot = slotOf(movieId);
+        }
+        keys[slot] = movieId;
+        dots[slot] = dotDelta;
+        counts[slot] = countDelta;
+        size++;
+        return true;
+    }
+
+    float dot(int movieId) {
+        int slot = slotOf(movieId);
+        return keys[slot] == movieId ? dots[slot] : 0f;
+    }
+
+    int count(int movieId) {
+        int slot = slotOf(movieId);
+        return keys[slot] == movieId ? counts[slot] : 0;
+    }
+
+    void forEach(CellConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                consumer.accept(keys[slot], dots[slot], counts[slot]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Allocated, not used: free slots cost as much as full ones
+    long bytes() {
+        return (long) keys.length * BYTES_PER_SLOT;
+    }
+
+    Neighbor[] neighbors() {
+        return neighbors;
+    }
+
+    void setNeighbors(Neighbor[] neighbors) {
+        this.neighbors = neighbors;
+    }
+
+    // Slot holding movieId, or the free slot where it would go
+    private int slotOf(int movieId) {
+        int mask = keys.length - 1;
+        int slot = mix(movieId) & mask;
+        while (keys[slot] != FREE && keys[slot] != movieId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        float[] oldDots = dots;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != FREE) {
+                int target = slotOf(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                dots[target] = oldDots[slot];
+                counts[target] = oldCounts[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, FREE);
+        dots = new float[capacity];
+        counts = new int[capacity];
+    }
+
+    // Sequential movie ids would otherwise cluster in neighboring slots
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,449 @@
+package com.example.movie.movieservice.similarity;
+
+import com.example.movie.movieservice.replication.RatingChangeListener;
+import com.example.movie.movieservice.replication.RatingEntry;
+import com.example.movie.movieservice.replication.RatingStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Item-to-item collaborative filtering. Movies are similar when the same users rated them alike,
+ * measured as the cosine between their rating vectors.
+ * <p>
+ * Every rating change updates the co-rating matrix incrementally: one cell per movie the user has
+ * rated, in both directions, plus the changed movie's neighbor list. Neighbor lists of other movies
+ * whose similarity shifted only through the changed norm are left as they are, so the periodic
+ * parallel recompute rebuilds everything from the user profiles and corrects that drift.
+ * <p>
+ * Rating writes only queue their change; a single updater thread applies the queue in order, a batch
+ * per hold of the engine lock, so writes to different movies never wait for each other here and
+ * recommendations lag them by the length of the queue. A write to a rating that is still queued is
+ * folded into the queued change, so the queue holds at most one change per rating and cannot outgrow
+ * the rating store however fast writes arrive.
+ * <p>
+ * The engine sees the ratings of this instance's rating store only. With sharding that is the movies
+ * this instance holds, so two movies are co-rated only when both live here, similarities between
+ * movies on different shards are never computed, and a user's profile is just their ratings of local
+ * movies. Each shard recommends from its own part of the catalog and the caller merges the shards' lists.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(SimilarityProperties.class)
+public class ItemSimilarityEngine implements RatingChangeListener {
+
+    // A rating change applied while a recompute was running, replayed on the rebuilt rows
+    private record Update(int movieId, float previous, float rating, int[] otherMovies, float[] otherRatings) {
+    }
+
+    // A rating change waiting for the updater thread
+    private record Change(RatingEntry previous, RatingEntry current) {
+    }
+
+    // Changes applied per hold of the lock, so a long backlog does not hold off recommend()
+    private static final int CHANGES_PER_LOCK = 256;
+
+    private static final Comparator<Neighbor> MOST_SIMILAR_FIRST = Comparator
+            .comparing(Neighbor::similarity, Comparator.reverseOrder())
+            .thenComparingInt(Neighbor::movieId);
+
+    private final RatingStore ratingStore;
+    private final SimilarityProperties properties;
+    private final long maxBytes;
+
+    // Guarded by this
+    private final Map<Integer, UserProfile> profiles = new HashMap<>();
+    private long allocatedBytes;
+    private boolean changedSinceRecompute;
+    private List<Update> updatesDuringRecompute;
+
+    private volatile Map<Integer, ItemRow> rows = new ConcurrentHashMap<>();
+
+    // Changes not applied yet, keyed by rating (movie and user), and the order their ratings were queued in.
+    // The count can dip below the queue length while a drain races an enqueue.
+    private final Map<Long, Change> pending = new ConcurrentHashMap<>();
+    private final Queue<Long> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedChanges = new AtomicInteger();
+
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "similarity-updates");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "similarity-recompute");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ItemSimilarityEngine(RatingStore ratingStore, SimilarityProperties properties) {
+        this.ratingStore = ratingStore;
+        this.properties = properties;
+        this.maxBytes = (long) properties.getMemoryBudgetMb() * 1024 * 1024;
+    }
+
+    @PostConstruct
+    public void start() {
+        ratingStore.addListener(this);
+        long interval = properties.getRecomputeInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::recomputeSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        updater.shutdownNow();
+    }
+
+    // Called under the movie's rating lock, so the change is only queued; changes to one register
+    // arrive in order and the single updater thread keeps that order. A change to a register that is
+    // still queued only moves the queued change's target, its starting point was never applied.
+    @Override
+    public void onRatingChanged(RatingEntry previous, RatingEntry current) {
+        long register = (long) current.movieId() << 32 | (current.userId() & 0xFFFFFFFFL);
+        Change change = new Change(previous, current);
+        if (pending.merge(register, change, (queued, next) -> new Change(queued.previous(), next.current())) != change) {
+            return;
+        }
+        changes.add(register);
+        if (queuedChanges.getAndIncrement() == 0) {
+            try {
+                updater.execute(this::applyQueuedChanges);
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+        }
+    }
+
+    // Changes queued but not applied yet
+    int pendingChanges() {
+        return Math.max(queuedChanges.get(), 0);
+    }
+
+    // Exits once the count it saw is used up; an enqueue that finds the count at zero schedules another run
+    private void applyQueuedChanges() {
+        int applied;
+        do {
+            applied = 0;
+            synchronized (this) {
+                Long register;
+                while (applied < CHANGES_PER_LOCK && (register = changes.poll()) != null) {
+                    applied++;
+                    Change change = pending.remove(register);
+                    if (change == null) {
+                        continue;
+                    }
+                    try {
+                        apply(change.previous(), change.current());
+                    } catch (RuntimeException e) {
+                        // One bad change must not stall every later one
+                        log.warn("Could not apply rating change for movie {}: {}", change.current().movieId(), e.getMessage());
+                    }
+                }
+            }
+        } while (queuedChanges.addAndGet(-applied) > 0);
+    }
+
+    // Guarded by this
+    private void apply(RatingEntry previous, RatingEntry current) {
+        UserProfile profile = profiles.computeIfAbsent(current.userId(), id -> new UserProfile());
+        float previousRating = previous != null ? previous.rating() : Float.NaN;
+
+        apply(current.movieId(), previousRating, current.rating(), profile.movieIds(), profile.ratings(), profile.size());
+        if (updatesDuringRecompute != null) {
+            updatesDuringRecompute.add(new Update(current.movieId(), previousRating, current.rating(),
+                    Arrays.copyOf(profile.movieIds(), profile.size()), Arrays.copyOf(profile.ratings(), profile.size())));
+        }
+        profile.put(current.movieId(), current.rating());
+        changedSinceRecompute = true;
+    }
+
+    public List<Neighbor> neighbors(int movieId) {
+        ItemRow row = rows.get(movieId);
+        return row != null ? List.of(row.neighbors()) : List.of();
+    }
+
+    // Movies the user has not rated, scored by similarity to the ones they did, weighted by how far each
+    // rating is from the user's mean: neighbors of a movie they rated below their average count against a
+    // candidate. Only positive scores are returned, what is left of the limit is for the caller to fill.
+    public List<Integer> recommend(int userId, int limit) {
+        int[] ratedMovies;
+        float[] ratings;
+        synchronized (this) {
+            UserProfile profile = profiles.get(userId);
+            if (profile == null) {
+                return List.of();
+            }
+            ratedMovies = Arrays.copyOf(profile.movieIds(), profile.size());
+            ratings = Arrays.copyOf(profile.ratings(), profile.size());
+        }
+
+        double mean = 0;
+        for (float rating : ratings) {
+            mean += rating;
+        }
+        mean /= ratings.length;
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (int i = 0; i < ratedMovies.length; i++) {
+            double deviation = ratings[i] - mean;
+            ItemRow row = rows.get(ratedMovies[i]);
+            if (row == null || deviation == 0) {
+                continue;
+            }
+            for (Neighbor neighbor : row.neighbors()) {
+                if (Arrays.binarySearch(ratedMovies, neighbor.movieId()) < 0) {
+                    scores.merge(neighbor.movieId(), neighbor.similarity() * deviation, Double::sum);
+                }
+            }
+        }
+
+        return scores.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // Applies one rating change to the matrix, given the user's other ratings at the time of the change
+    private void apply(int movieId, float previous, float rating, int[] otherMovies, float[] otherRatings, int count) {
+        Map<Integer, ItemRow> current = rows;
+        ItemRow row = rowOf(current, movieId);
+        boolean firstRating = Float.isNaN(previous);
+        float previousValue = firstRating ? 0f : previous;
+        int countDelta = firstRating ? 1 : 0;
+
+        row.normSquared += (double) rating * rating - (double) previousValue * previousValue;
+
+        for (int i = 0; i < count; i++) {
+            int other = otherMovies[i];
+            if (other == movieId) {
+                continue;
+            }
+            float dotDelta = (rating - previousValue) * otherRatings[i];
+            ItemRow otherRow = rowOf(current, other);
+            addToCell(row, other, dotDelta, countDelta);
+            addToCell(otherRow, movieId, dotDelta, countDelta);
+            updateNeighbor(otherRow, movieId, similarity(otherRow, row, movieId));
+        }
+
+        refreshNeighbors(row, current);
+    }
+
+    // Rows created between recomputes start with the smallest table and grow with their cells
+    private ItemRow rowOf(Map<Integer, ItemRow> current, int movieId) {
+        return current.computeIfAbsent(movieId, id -> {
+            ItemRow row = new ItemRow(0);
+            allocatedBytes += row.bytes();
+            return row;
+        });
+    }
+
+    // Past the memory budget only existing cells are updated, new pairs wait for the next recompute
+    private void addToCell(ItemRow row, int otherMovieId, float dotDelta, int countDelta) {
+        long before = row.bytes();
+        row.add(otherMovieId, dotDelta, countDelta, allocatedBytes < maxBytes);
+        allocatedBytes += row.bytes() - before;
+    }
+
+    private float similarity(ItemRow row, ItemRow other, int otherMovieId) {
+        if (row.count(otherMovieId) < properties.getMinCoRatings()) {
+            return Float.NaN;
+        }
+        double denominator = Math.sqrt(row.normSquared * other.normSquared);
+        return denominator > 0 ? (float) (row.dot(otherMovieId) / denominator) : Float.NaN;
+    }
+
+    // Rebuilds a row's top-K list from all of its cells
+    private void refreshNeighbors(ItemRow row, Map<Integer, ItemRow> current) {
+        PriorityQueue<Neighbor> best = new PriorityQueue<>(MOST_SIMILAR_FIRST.reversed());
+        row.forEach((movieId, dot, count) -> {
+            ItemRow other = current.get(movieId);
+            if (other == null || count < properties.getMinCoRatings()) {
+                return;
+            }
+            double denominator = Math.sqrt(row.normSquared * other.normSquared);
+            if (denominator > 0) {
+                offer(best, new Neighbor(movieId, (float) (dot / denominator)));
+            }
+        });
+        row.setNeighbors(sorted(best));
+    }
+
+    // Moves, adds or drops a single entry of a row's top-K list
+    private void updateNeighbor(ItemRow row, int movieId, float similarity) {
+        List<Neighbor> neighbors = new ArrayList<>(row.neighbors().length + 1);
+        for (Neighbor neighbor : row.neighbors()) {
+            if (neighbor.movieId() != movieId) {
+                neighbors.add(neighbor);
+            }
+        }
+        if (!Float.isNaN(similarity) && similarity > 0) {
+            neighbors.add(new Neighbor(movieId, similarity));
+            neighbors.sort(MOST_SIMILAR_FIRST);
+        }
+        if (neighbors.size() > properties.getMaxNeighbors()) {
+            neighbors = neighbors.subList(0, properties.getMaxNeighbors());
+        }
+        row.setNeighbors(neighbors.toArray(new Neighbor[0]));
+    }
+
+    private void offer(PriorityQueue<Neighbor> best, Neighbor candidate) {
+        if (candidate.similarity() <= 0) {
+            return;
+        }
+        if (best.size() < properties.getMaxNeighbors()) {
+            best.add(candidate);
+        } else if (MOST_SIMILAR_FIRST.compare(candidate, best.peek()) < 0) {
+            best.poll();
+            best.add(candidate);
+        }
+    }
+
+    private static Neighbor[] sorted(PriorityQueue<Neighbor> best) {
+        Neighbor[] neighbors = best.toArray(new Neighbor[0]);
+        Arrays.sort(neighbors, MOST_SIMILAR_FIRST);
+        return neighbors;
+    }
+
+    private void recomputeSafely() {
+        try {
+            recompute();
+        } catch (RuntimeException e) {
+            log.warn("Similarity recompute failed: {}", e.getMessage());
+        }
+    }
+
+    // Rebuilds every row from the user profiles in parallel, then swaps them in and replays concurrent changes
+    void recompute() {
+        int[][] userMovies;
+        float[][] userRatings;
+        synchronized (this) {
+            if (!changedSinceRecompute) {
+                return;
+            }
+            changedSinceRecompute = false;
+            updatesDuringRecompute = new ArrayList<>();
+            userMovies = new int[profiles.size()][];
+            userRatings = new float[profiles.size()][];
+            int u = 0;
+            for (UserProfile profile : profiles.values()) {
+                userMovies[u] = Arrays.copyOf(profile.movieIds(), profile.size());
+                userRatings[u] = Arrays.copyOf(profile.ratings(), profile.size());
+                u++;
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        boolean swapped = false;
+        try {
+            RatingMatrix matrix = RatingMatrix.of(userMovies, userRatings);
+            // An equal share of the budget per row, counted in allocated slots rather than cells
+            long slotsPerRow = maxBytes / ItemRow.BYTES_PER_SLOT / Math.max(matrix.movieCount(), 1);
+            int maxCellsPerRow = Math.max(properties.getMaxNeighbors(), ItemRow.cellsFitting(slotsPerRow));
+
+            ItemRow[] built = new ItemRow[matrix.movieCount()];
+            ThreadLocal<RatingMatrix.Scratch> scratch = ThreadLocal.withInitial(matrix::newScratch);
+            ForkJoinPool pool = new ForkJoinPool(Math.max(properties.getParallelism(), 1));
+            try {
+                pool.submit(() -> IntStream.range(0, matrix.movieCount()).parallel()
+                        .forEach(item -> built[item] = buildRow(matrix, item, scratch.get(), maxCellsPerRow))).get();
+            } finally {
+                pool.shutdown();
+            }
+
+            Map<Integer, ItemRow> rebuilt = new ConcurrentHashMap<>(built.length * 2);
+            long cells = 0;
+            long bytes = 0;
+            for (int item = 0; item < built.length; item++) {
+                rebuilt.put(matrix.movieId(item), built[item]);
+                cells += built[item].size();
+                bytes += built[item].bytes();
+            }
+
+            int replayed;
+            synchronized (this) {
+                rows = rebuilt;
+                allocatedBytes = bytes;
+                swapped = true;
+                replayed = updatesDuringRecompute.size();
+                for (Update update : updatesDuringRecompute) {
+                    apply(update.movieId(), update.previous(), update.rating(),
+                            update.otherMovies(), update.otherRatings(), update.otherMovies().length);
+                }
+            }
+            log.info("Recomputed similarities for {} movies and {} users in {} ms ({} cells in {} MB, {} changes replayed, {} queued)",
+                    built.length, userMovies.length, (System.nanoTime() - startNanos) / 1_000_000, cells,
+                    bytes / (1024 * 1024), replayed, pendingChanges());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not recompute similarities", e.getCause());
+        } finally {
+            synchronized (this) {
+                updatesDuringRecompute = null;
+                if (!swapped) {
+                    changedSinceRecompute = true; // Retry on the next round
+                }
+            }
+        }
+    }
+
+    private ItemRow buildRow(RatingMatrix matrix, int item, RatingMatrix.Scratch scratch, int maxCellsPerRow) {
+        int touched = matrix.accumulateCoRatings(item, scratch);
+
+        // Rank cells by similarity, the best ones are kept when the row is over its share of the budget.
+        // Each key packs the similarity, flipped so a plain ascending sort puts the highest first, above the
+        // cell's index, which sorts primitives instead of boxed indexes through a comparator.
+        long[] order = new long[touched];
+        float[] similarities = new float[touched];
+        for (int i = 0; i < touched; i++) {
+            int other = scratch.touched[i];
+            double denominator = Math.sqrt(matrix.normSquared(item) * matrix.normSquared(other));
+            similarities[i] = denominator > 0 ? (float) (scratch.dots[other] / denominator) : 0f;
+            order[i] = ((long) ~sortableBits(similarities[i]) << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int kept = Math.min(touched, maxCellsPerRow);
+        ItemRow row = new ItemRow(kept);
+        row.normSquared = matrix.normSquared(item);
+        List<Neighbor> neighbors = new ArrayList<>(properties.getMaxNeighbors());
+        for (int i = 0; i < kept; i++) {
+            int cell = (int) order[i];
+            int other = scratch.touched[cell];
+            row.add(matrix.movieId(other), scratch.dots[other], scratch.counts[other], true);
+            if (neighbors.size() < properties.getMaxNeighbors()
+                    && scratch.counts[other] >= properties.getMinCoRatings() && similarities[cell] > 0) {
+                neighbors.add(new Neighbor(matrix.movieId(other), similarities[cell]));
+            }
+        }
+        row.setNeighbors(neighbors.toArray(new Neighbor[0]));
+
+        scratch.reset(touched);
+        return row;
+    }
+
+    // Float bits as an int that orders like the float itself
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7fffffff);
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.movie.movieservice.similarity;
+
+public record Neighbor(int movieId, float similarity) {
+}
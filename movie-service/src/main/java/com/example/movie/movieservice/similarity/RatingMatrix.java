@@ -0,0 +1,123 @@
+package com.example.movie.movieservice.similarity;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of all ratings for a recompute, indexed both ways in compressed sparse rows:
+ * user -> (movie, rating) and movie -> (user, rating). Movies are renumbered densely so the
+ * per-thread scratch space can be plain arrays.
+ */
+final class RatingMatrix {
+
+    // Per-thread accumulators for one row, only the touched entries are reset afterwards
+    static final class Scratch {
+        final float[] dots;
+        final int[] counts;
+        final int[] touched;
+
+        private Scratch(int movieCount) {
+            dots = new float[movieCount];
+            counts = new int[movieCount];
+            touched = new int[movieCount];
+        }
+
+        void reset(int touchedCount) {
+            for (int i = 0; i < touchedCount; i++) {
+                dots[touched[i]] = 0f;
+                counts[touched[i]] = 0;
+            }
+        }
+    }
+
+    private final int[] movieIds;
+    private final double[] normSquared;
+
+    private final int[][] userItems;
+    private final float[][] userRatings;
+
+    private final int[] itemOffsets;
+    private final int[] itemUsers;
+    private final float[] itemRatings;
+
+    private RatingMatrix(int[] movieIds, int[][] userItems, float[][] userRatings) {
+        this.movieIds = movieIds;
+        this.userItems = userItems;
+        this.userRatings = userRatings;
+
+        int movieCount = movieIds.length;
+        normSquared = new double[movieCount];
+        itemOffsets = new int[movieCount + 1];
+        for (int[] items : userItems) {
+            for (int item : items) {
+                itemOffsets[item + 1]++;
+            }
+        }
+        for (int item = 0; item < movieCount; item++) {
+            itemOffsets[item + 1] += itemOffsets[item];
+        }
+
+        itemUsers = new int[itemOffsets[movieCount]];
+        itemRatings = new float[itemOffsets[movieCount]];
+        int[] next = Arrays.copyOf(itemOffsets, movieCount);
+        for (int user = 0; user < userItems.length; user++) {
+            for (int i = 0; i < userItems[user].length; i++) {
+                int item = userItems[user][i];
+                float rating = userRatings[user][i];
+                itemUsers[next[item]] = user;
+                itemRatings[next[item]++] = rating;
+                normSquared[item] += (double) rating * rating;
+            }
+        }
+    }
+
+    // Profiles hold movie ids sorted ascending, which keeps the dense indices sorted as well
+    static RatingMatrix of(int[][] userMovies, float[][] userRatings) {
+        int[] movieIds = Arrays.stream(userMovies).flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+        int[][] userItems = new int[userMovies.length][];
+        for (int user = 0; user < userMovies.length; user++) {
+            userItems[user] = new int[userMovies[user].length];
+            for (int i = 0; i < userMovies[user].length; i++) {
+                userItems[user][i] = Arrays.binarySearch(movieIds, userMovies[user][i]);
+            }
+        }
+        return new RatingMatrix(movieIds, userItems, userRatings);
+    }
+
+    int movieCount() {
+        return movieIds.length;
+    }
+
+    int movieId(int item) {
+        return movieIds[item];
+    }
+
+    double normSquared(int item) {
+        return normSquared[item];
+    }
+
+    Scratch newScratch() {
+        return new Scratch(movieIds.length);
+    }
+
+    // Sums rating products with every movie sharing a rater with item, returns how many were touched
+    int accumulateCoRatings(int item, Scratch scratch) {
+        int touched = 0;
+        for (int p = itemOffsets[item]; p < itemOffsets[item + 1]; p++) {
+            int user = itemUsers[p];
+            float rating = itemRatings[p];
+            int[] items = userItems[user];
+            float[] ratings = userRatings[user];
+            for (int i = 0; i < items.length; i++) {
+                int other = items[i];
+                if (other == item) {
+                    continue;
+                }
+                if (scratch.counts[other]++ == 0) {
+                    scratch.touched[touched++] = other;
+                }
+                scratch.dots[other] += rating * ratings[i];
+            }
+        }
+        return touched;
+    }
+}
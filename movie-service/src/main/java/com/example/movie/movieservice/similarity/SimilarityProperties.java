@@ -0,0 +1,26 @@
+package com.example.movie.movieservice.similarity;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.similarity")
+public class SimilarityProperties {
+
+    // Neighbors kept per movie for recommendations
+    private int maxNeighbors = 20;
+
+    // Pairs rated by fewer users are not used as neighbors, one shared rater always looks identical
+    private int minCoRatings = 3;
+
+    // Upper bound for the co-rating matrix tables including their free slots, rows are truncated to the most similar cells to fit
+    private int memoryBudgetMb = 256;
+
+    // How often the matrix is rebuilt from scratch, fixing drift of the incremental updates
+    private Duration recomputeInterval = Duration.ofMinutes(5);
+
+    // Threads building rows during a recompute
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,52 @@
+package com.example.movie.movieservice.similarity;
+
+import java.util.Arrays;
+
+/**
+ * One user's ratings as parallel primitive arrays sorted by movie id. Not thread-safe.
+ */
+final class UserProfile {
+
+    private int[] movieIds = new int[4];
+    private float[] ratings = new float[4];
+    private int size;
+
+    // Returns the replaced rating, or NaN when the movie was not rated before
+    float put(int movieId, float rating) {
+        int index = Arrays.binarySearch(movieIds, 0, size, movieId);
+        if (index >= 0) {
+            float previous = ratings[index];
+            ratings[index] = rating;
+            return previous;
+        }
+
+        int insertAt = -index - 1;
+        if (size == movieIds.length) {
+            movieIds = Arrays.copyOf(movieIds, size * 2);
+            ratings = Arrays.copyOf(ratings, size * 2);
+        }
+        System.arraycopy(movieIds, insertAt, movieIds, insertAt + 1, size - insertAt);
+        System.arraycopy(ratings, insertAt, ratings, insertAt + 1, size - insertAt);
+        movieIds[insertAt] = movieId;
+        ratings[insertAt] = rating;
+        size++;
+        return Float.NaN;
+    }
+
+    boolean contains(int movieId) {
+        return Arrays.binarySearch(movieIds, 0, size, movieId) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Backing arrays, valid up to size() until the next put
+    int[] movieIds() {
+        return movieIds;
+    }
+
+    float[] ratings() {
+        return ratings;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.movie.movieservice.trending;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch of double-valued counters, updated with CAS so writers never block. Estimates
+ * never undercount; with width w an estimate exceeds the true value by at most 2/w of the total
+ * weight with high probability, so only the many small counters are blurred, not the heavy hitters.
+ * <p>
+ * Decay is applied by the caller through forward decay: each event is added with a weight that
+ * grows exponentially with its timestamp, so the counters never have to be touched to age them.
+ */
+final class DecayedCountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray cells;
+
+    DecayedCountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.cells = new AtomicLongArray(width * depth);
+    }
+
+    // Adds the weight and returns the key's new estimate
+    double add(int key, double weight) {
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + bucket(key, row);
+            long current;
+            double next;
+            do {
+                current = cells.get(index);
+                next = Double.longBitsToDouble(current) + weight;
+            } while (!cells.compareAndSet(index, current, Double.doubleToRawLongBits(next)));
+            estimate = Math.min(estimate, next);
+        }
+        return estimate;
+    }
+
+    double estimate(int key) {
+        double estimate = Double.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, Double.longBitsToDouble(cells.get(row * width + bucket(key, row))));
+        }
+        return estimate;
+    }
+
+    // Copy with every counter multiplied by factor, used to move the forward-decay landmark
+    DecayedCountMinSketch scaled(double factor) {
+        DecayedCountMinSketch copy = new DecayedCountMinSketch(width, depth);
+        for (int i = 0; i < cells.length(); i++) {
+            copy.cells.set(i, Double.doubleToRawLongBits(Double.longBitsToDouble(cells.get(i)) * factor));
+        }
+        return copy;
+    }
+
+    // Independent hash per row from one murmur3 finalizer over the key and row seed
+    private int bucket(int key, int row) {
+        int h = key * 0x9E3779B9 + row * 0x85EBCA6B;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, width);
+    }
+}
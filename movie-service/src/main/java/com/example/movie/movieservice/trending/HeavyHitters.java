@@ -0,0 +1,81 @@
+package com.example.movie.movieservice.trending;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Bounded set of the movies with the highest sketch estimates in one scope. A movie is admitted
+ * when there is room or its estimate beats the smallest one kept at the last prune. The set may
+ * grow a little past its capacity, the thread that notices first trims it while the others carry
+ * on, so recording an event never waits for a lock.
+ */
+final class HeavyHitters {
+
+    private final int capacity;
+    private final Map<Integer, Boolean> candidates = new ConcurrentHashMap<>();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private volatile double admissionThreshold;
+
+    HeavyHitters(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    void offer(int movieId, double estimate, IntToDoubleFunction estimator) {
+        if (candidates.containsKey(movieId)) {
+            return;
+        }
+        if (candidates.size() >= capacity && estimate <= admissionThreshold) {
+            return;
+        }
+        candidates.put(movieId, Boolean.TRUE);
+        if (candidates.size() > capacity + capacity / 4 && pruning.compareAndSet(false, true)) {
+            try {
+                prune(estimator);
+            } finally {
+                pruning.set(false);
+            }
+        }
+    }
+
+    // Candidates ordered by current estimate, highest first
+    List<Integer> top(int limit, IntToDoubleFunction estimator) {
+        return ranked(estimator).stream().limit(limit).map(Ranked::movieId).toList();
+    }
+
+    void remove(int movieId) {
+        candidates.remove(movieId);
+    }
+
+    // Copy for a sketch whose counters were multiplied by factor
+    HeavyHitters scaled(double factor) {
+        HeavyHitters copy = new HeavyHitters(capacity);
+        copy.candidates.putAll(candidates);
+        copy.admissionThreshold = admissionThreshold * factor;
+        return copy;
+    }
+
+    private void prune(IntToDoubleFunction estimator) {
+        List<Ranked> ranked = ranked(estimator);
+        for (int i = capacity; i < ranked.size(); i++) {
+            candidates.remove(ranked.get(i).movieId());
+        }
+        admissionThreshold = ranked.get(Math.min(capacity, ranked.size()) - 1).estimate();
+    }
+
+    private List<Ranked> ranked(IntToDoubleFunction estimator) {
+        List<Ranked> ranked = new ArrayList<>(candidates.size());
+        for (int movieId : candidates.keySet()) {
+            ranked.add(new Ranked(movieId, estimator.applyAsDouble(movieId)));
+        }
+        ranked.sort(Comparator.comparingDouble(Ranked::estimate).reversed().thenComparingInt(Ranked::movieId));
+        return ranked;
+    }
+
+    private record Ranked(int movieId, double estimate) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.movie.movieservice.trending;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * "Trending now": movies ranked by recent interactions, each counting half as much per half-life.
+ * <p>
+ * Counters live in a count-min sketch, so memory is fixed however many titles there are, and the
+ * heavy hitters of each scope (global and per genre) are tracked in bounded candidate sets that
+ * the top-K queries rank. Decay uses forward decay: an event at time t is added with weight
+ * 2^((t - landmark) / halfLife), which preserves the order of decayed scores without rewriting
+ * any counter as time passes. Recording takes no locks except when the landmark moves.
+ * <p>
+ * Counts are per instance and not replicated: each instance records the interactions and rating
+ * writes it receives, which under sharding are those of the movies it owns.
+ */
+@Component
+@Slf4j
+@EnableConfigurationProperties(TrendingProperties.class)
+public class TrendingEngine {
+
+    // Weights double every half-life, the landmark moves long before doubles lose range
+    private static final double MAX_EXPONENT = 64;
+
+    private record Generation(long landmarkMillis, DecayedCountMinSketch sketch,
+                              HeavyHitters global, Map<String, HeavyHitters> byGenre) {
+    }
+
+    private final TrendingProperties properties;
+    private final double halfLifeMillis;
+    private volatile Generation generation;
+
+    public TrendingEngine(TrendingProperties properties) {
+        this.properties = properties;
+        this.halfLifeMillis = properties.getHalfLife().toMillis();
+        this.generation = new Generation(System.currentTimeMillis(),
+                new DecayedCountMinSketch(properties.getSketchWidth(), properties.getSketchDepth()),
+                new HeavyHitters(properties.getCandidatesPerScope()), new ConcurrentHashMap<>());
+    }
+
+    public void record(int movieId, String genre, TrendingSignal signal) {
+        long now = System.currentTimeMillis();
+        Generation current = generation;
+        double exponent = (now - current.landmarkMillis()) / halfLifeMillis;
+        if (exponent > MAX_EXPONENT) {
+            current = moveLandmark(now);
+            exponent = (now - current.landmarkMillis()) / halfLifeMillis;
+        }
+
+        double estimate = current.sketch().add(movieId, weightOf(signal) * Math.pow(2, exponent));
+        current.global().offer(movieId, estimate, current.sketch()::estimate);
+        if (genre != null) {
+            current.byGenre().computeIfAbsent(genre.toLowerCase(Locale.ROOT),
+                            k -> new HeavyHitters(properties.getCandidatesPerScope()))
+                    .offer(movieId, estimate, current.sketch()::estimate);
+        }
+    }
+
+    // Movie ids with the highest decayed score, globally or within a genre
+    public List<Integer> top(int limit, String genre) {
+        Generation current = generation;
+        HeavyHitters candidates = genre == null
+                ? current.global()
+                : current.byGenre().get(genre.toLowerCase(Locale.ROOT));
+        return candidates != null ? candidates.top(limit, current.sketch()::estimate) : List.of();
+    }
+
+    // Current decayed score, in "interactions right now" units so scores from different instances compare
+    public double score(int movieId) {
+        Generation current = generation;
+        double estimate = current.sketch().estimate(movieId);
+        return estimate * Math.pow(2, -(System.currentTimeMillis() - current.landmarkMillis()) / halfLifeMillis);
+    }
+
+    // Drops a movie that left the catalog, its sketch counters fade out on their own
+    public void remove(int movieId) {
+        Generation current = generation;
+        current.global().remove(movieId);
+        current.byGenre().values().forEach(candidates -> candidates.remove(movieId));
+    }
+
+    // Rescales everything to a new landmark, happens once per MAX_EXPONENT half-lives. Events recorded
+    // into the old generation while it is copied are lost, which is a rounding error at that age.
+    private synchronized Generation moveLandmark(long now) {
+        Generation current = generation;
+        if ((now - current.landmarkMillis()) / halfLifeMillis <= MAX_EXPONENT) {
+            return current; // Another thread already moved it
+        }
+
+        double factor = Math.pow(2, -(now - current.landmarkMillis()) / halfLifeMillis);
+        Map<String, HeavyHitters> byGenre = new ConcurrentHashMap<>();
+        current.byGenre().forEach((genre, candidates) -> byGenre.put(genre, candidates.scaled(factor)));
+        Generation moved = new Generation(now, current.sketch().scaled(factor), current.global().scaled(factor), byGenre);
+        generation = moved;
+        log.info("Moved trending decay landmark, {} genres carried over", byGenre.size());
+        return moved;
+    }
+
+    private double weightOf(TrendingSignal signal) {
+        return switch (signal) {
+            case VIEW -> properties.getViewWeight();
+            case WATCH -> properties.getWatchWeight();
+            case RATING -> properties.getRatingWeight();
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.movie.movieservice.trending;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.trending")
+public class TrendingProperties {
+
+    // An interaction counts half as much after this long
+    private Duration halfLife = Duration.ofHours(1);
+
+    // Count-min sketch size, memory is depth x width x 8 bytes whatever the catalog size
+    private int sketchWidth = 65536;
+    private int sketchDepth = 4;
+
+    // Heavy-hitter candidates tracked per scope (global and each genre), bounds the top-K queries
+    private int candidatesPerScope = 500;
+
+    // Weight of each signal
+    private double viewWeight = 1.0;
+    private double watchWeight = 3.0;
+    private double ratingWeight = 2.0;
+}
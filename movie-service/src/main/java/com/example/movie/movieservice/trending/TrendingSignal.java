@@ -0,0 +1,7 @@
+package com.example.movie.movieservice.trending;
+
+public enum TrendingSignal {
+    VIEW,
+    WATCH,
+    RATING
+}
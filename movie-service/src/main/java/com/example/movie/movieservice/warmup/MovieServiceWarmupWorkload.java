@@ -0,0 +1,108 @@
+package com.example.movie.movieservice.warmup;
+
+import com.example.movie.common.warmup.NoopServerCallStreamObserver;
+import com.example.movie.common.warmup.WarmupWorkload;
+import com.example.movie.movieservice.model.Movie;
+import com.example.movie.movieservice.proto.BatchedTrendingMoviesRequest;
+import com.example.movie.movieservice.proto.MovieRequest;
+import com.example.movie.movieservice.proto.SearchMoviesRequest;
+import com.example.movie.movieservice.proto.TrendingMoviesRequest;
+import com.example.movie.movieservice.proto.UserEventRequest;
+import com.example.movie.movieservice.repository.MovieRepository;
+import com.example.movie.movieservice.service.MovieServiceImpl;
+import com.example.movie.movieservice.trending.TrendingEngine;
+import com.example.movie.movieservice.trending.TrendingProperties;
+import com.example.movie.movieservice.trending.TrendingSignal;
+import io.grpc.stub.StreamObserver;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Read-only calls through MovieServiceImpl and MovieRepository. GetTrendingMovies itself is left
+ * out because it sleeps between rows, the batched variant covers the same repository path in both
+ * trending modes. Recommendation events are sent as recommend_only for a user id no real user has,
+ * so no preference or trending signal is recorded; the recording code is warmed on a throwaway
+ * trending engine instead, whose counts nothing reads.
+ */
+@Component
+public class MovieServiceWarmupWorkload implements WarmupWorkload {
+
+    private static final int SAMPLE_SIZE = 20;
+
+    // User ids start at 1
+    private static final int WARMUP_USER_ID = -1;
+
+    // Same code as the real engine, sized small since its counts are discarded
+    private static final int SINK_SKETCH_WIDTH = 1024;
+
+    private final MovieServiceImpl movieService;
+    private final MovieRepository movieRepository;
+    private final TrendingEngine trendingSink;
+
+    public MovieServiceWarmupWorkload(MovieServiceImpl movieService, MovieRepository movieRepository,
+                                      TrendingProperties trendingProperties) {
+        this.movieService = movieService;
+        this.movieRepository = movieRepository;
+
+        TrendingProperties sinkProperties = new TrendingProperties();
+        sinkProperties.setHalfLife(trendingProperties.getHalfLife());
+        sinkProperties.setSketchWidth(SINK_SKETCH_WIDTH);
+        sinkProperties.setSketchDepth(trendingProperties.getSketchDepth());
+        sinkProperties.setCandidatesPerScope(trendingProperties.getCandidatesPerScope());
+        this.trendingSink = new TrendingEngine(sinkProperties);
+    }
+
+    @Override
+    public void runRound() {
+        List<Movie> sample = movieRepository.getTrendingMovies(SAMPLE_SIZE, null);
+        for (Movie movie : sample) {
+            movieService.getMovie(MovieRequest.newBuilder().setMovieId(movie.getId()).build(),
+                    new NoopServerCallStreamObserver<>());
+        }
+
+        for (TrendingMoviesRequest.TrendingMode mode : List.of(TrendingMoviesRequest.TrendingMode.ALL_TIME_RATING,
+                TrendingMoviesRequest.TrendingMode.TRENDING_NOW)) {
+            movieService.getTrendingMoviesBatched(BatchedTrendingMoviesRequest.newBuilder()
+                            .setRequest(TrendingMoviesRequest.newBuilder().setLimit(100).setMode(mode))
+                            .build(),
+                    new NoopServerCallStreamObserver<>());
+        }
+
+        if (sample.isEmpty()) {
+            return;
+        }
+        Movie first = sample.get(0);
+        movieRepository.getTrendingMovies(SAMPLE_SIZE, first.getGenre());
+        movieRepository.getTrendingNowMovies(SAMPLE_SIZE, first.getGenre());
+
+        StreamObserver<UserEventRequest> events = movieService.getPersonalizedRecommendations(new NoopServerCallStreamObserver<>());
+        for (Movie movie : sample) {
+            for (UserEventRequest.EventType eventType : List.of(UserEventRequest.EventType.VIEW,
+                    UserEventRequest.EventType.WATCH, UserEventRequest.EventType.RATE)) {
+                events.onNext(UserEventRequest.newBuilder()
+                        .setUserId(WARMUP_USER_ID)
+                        .setMovieId(movie.getId())
+                        .setEventType(eventType)
+                        .setRecommendOnly(true)
+                        .setGenre(movie.getGenre())
+                        .build());
+            }
+        }
+        events.onCompleted();
+
+        for (Movie movie : sample) {
+            trendingSink.record(movie.getId(), movie.getGenre(), TrendingSignal.VIEW);
+            trendingSink.record(movie.getId(), movie.getGenre(), TrendingSignal.WATCH);
+            trendingSink.score(movie.getId());
+        }
+        trendingSink.top(SAMPLE_SIZE, first.getGenre());
+
+        // Full title and a type-ahead prefix exercise both the exact and the prefix lookups
+        String title = first.getTitle();
+        for (String query : List.of(title, title.substring(0, Math.min(3, title.length())))) {
+            movieService.searchMovies(SearchMoviesRequest.newBuilder().setQuery(query).setLimit(10).build(),
+                    new NoopServerCallStreamObserver<>());
+        }
+    }
+}
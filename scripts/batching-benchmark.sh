@@ -0,0 +1,78 @@
+#!/usr/bin/env bash
+# Compares GetTrendingMovies with GetTrendingMoviesBatched in rows/sec and bytes on the wire.
+#
+# Usage: scripts/batching-benchmark.sh [rows] [concurrency] [calls]
+#
+# Writes a generated catalog of the given number of rows per call (default 1000), starts
+# movie-service on it and streams the whole catalog per call with ghz (https://ghz.sh) at the given
+# concurrency (default 20) for the given number of calls (default 200): one row per message, then
+# batched, then batched with gzip. For each run it prints rows/sec and the bytes that crossed the
+# loopback interface per row, both directions with HTTP/2 and TCP/IP framing included, so run it on
+# an otherwise quiet machine. GetTrendingMovies sleeps 100 ms between rows, so it only gets one call
+# per concurrency slot and its rows/sec shows that sleep; its bytes per row are still comparable.
+set -euo pipefail
+
+ROWS=${1:-1000}
+CONCURRENCY=${2:-20}
+CALLS=${3:-200}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+PROTO="$ROOT/movie-service/src/main/proto/movie_service.proto"
+CATALOG=$(mktemp --suffix=.csv)
+LOG=$(mktemp)
+RESULT=$(mktemp)
+trap 'rm -f "$CATALOG" "$LOG" "$RESULT"' EXIT
+
+command -v ghz >/dev/null || { echo "ghz is required, see https://ghz.sh" >&2; exit 1; }
+command -v jq >/dev/null || { echo "jq is required" >&2; exit 1; }
+[ -r /sys/class/net/lo/statistics/tx_bytes ] || { echo "loopback counters are not readable" >&2; exit 1; }
+
+# Titles and descriptions of typical length, a handful of genres and directors repeated across rows
+awk -v n="$ROWS" 'BEGIN {
+  srand(42)
+  split("the dark night love story last man city war house world girl life dead lost king secret return black star", words, " ")
+  split("Drama Crime Action Sci-Fi Comedy Horror Romance Thriller", genres, " ")
+  print "id,title,description,rating,genre,year,director"
+  for (id = 1; id <= n; id++) {
+    title = ""; description = ""
+    for (w = 0; w < 3; w++) title = title (w ? " " : "") words[int(length(words) * rand()) + 1]
+    for (w = 0; w < 14; w++) description = description (w ? " " : "") words[int(length(words) * rand()) + 1]
+    printf "%d,%s,%s,%.1f,%s,%d,Director %d\n", id, title, description, 1 + 9 * rand(), genres[int(length(genres) * rand()) + 1], 1950 + int(75 * rand()), int(40 * rand())
+  }
+}' >"$CATALOG"
+
+(cd "$ROOT" && mvn -q -B -pl movie-service -am -Pfast-startup -DskipTests package)
+JAR=$(ls "$ROOT"/movie-service/target/fast-startup/*.jar)
+java -Dspring.aot.enabled=false -Dspring.cloud.refresh.enabled=false -Deureka.client.register-with-eureka=false \
+     -Deureka.client.fetch-registry=false -Dapp.warmup.enabled=false -Dapp.replication.enabled=false \
+     -Dapp.sharding.enabled=false -Dapp.grpc.concurrency-limit.enabled=false \
+     -Dapp.catalog.path="$CATALOG" -jar "$JAR" >"$LOG" 2>&1 &
+pid=$!
+trap 'kill "$pid" 2>/dev/null; rm -f "$CATALOG" "$LOG" "$RESULT"' EXIT
+until grep -q "Started .* in" "$LOG"; do
+  kill -0 "$pid" 2>/dev/null || { echo "movie-service exited during startup, log:" >&2; cat "$LOG" >&2; exit 1; }
+  sleep 0.1
+done
+
+run_load() {
+  local call=$1 data=$2 calls=$3 before after
+  before=$(cat /sys/class/net/lo/statistics/tx_bytes)
+  ghz --insecure --proto "$PROTO" --call "$call" -d "$data" -c "$CONCURRENCY" -n "$calls" \
+      --timeout 0 --format json localhost:9090 >"$RESULT" || true
+  after=$(cat /sys/class/net/lo/statistics/tx_bytes)
+
+  jq -r --arg rows "$ROWS" --arg bytes "$(( after - before ))" '
+    ((.statusCodeDistribution.OK // 0) * ($rows | tonumber)) as $delivered
+    | [ (if .total > 0 then $delivered / (.total / 1e9) else 0 end | floor),
+        (if $delivered > 0 then ($bytes | tonumber) / $delivered else 0 end | floor),
+        (100 * ((.count - (.statusCodeDistribution.OK // 0)) / .count) | floor) ]
+    | "\(.[0]) rows/s   \(.[1]) bytes/row on the wire   failed \(.[2])%"
+  ' "$RESULT"
+}
+
+echo "movie-service trending, $ROWS rows per call, concurrency $CONCURRENCY, $CALLS calls, $(java -version 2>&1 | head -1)"
+printf "%-26s " "GetTrendingMovies"
+run_load movie.MovieService.GetTrendingMovies "{\"limit\":$ROWS}" "$CONCURRENCY"
+printf "%-26s " "GetTrendingMoviesBatched"
+run_load movie.MovieService.GetTrendingMoviesBatched "{\"request\":{\"limit\":$ROWS}}" "$CALLS"
+printf "%-26s " "  with gzip"
+run_load movie.MovieService.GetTrendingMoviesBatched "{\"request\":{\"limit\":$ROWS},\"gzip\":true}" "$CALLS"
@@ -0,0 +1,77 @@
+#!/usr/bin/env bash
+# Compares the gRPC execution modes of movie-service under concurrent streaming load.
+#
+# Usage: scripts/execution-benchmark.sh [concurrency] [calls]
+#
+# Starts movie-service once per mode (bounded, virtual, direct) and drives GetTrendingMovies and
+# GetTrendingMoviesBatched with ghz (https://ghz.sh) at the given concurrency (default 500) for the
+# given number of calls (default 5000). For each run it prints calls/sec, p50/p99 latency, the share
+# of calls that failed (RESOURCE_EXHAUSTED from the concurrency limit or a saturated pool), the peak
+# number of live JVM threads and the context switches of the process during the run.
+# GetTrendingMovies sleeps between rows, so in direct mode it blocks the event loop: that row shows
+# what the readme warns about rather than a usable configuration.
+# The concurrency limiter is switched off so the runs measure the executor and not the shedding.
+set -euo pipefail
+
+CONCURRENCY=${1:-500}
+CALLS=${2:-5000}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+PROTO="$ROOT/movie-service/src/main/proto/movie_service.proto"
+LOG=$(mktemp)
+RESULT=$(mktemp)
+trap 'rm -f "$LOG" "$RESULT"' EXIT
+
+command -v ghz >/dev/null || { echo "ghz is required, see https://ghz.sh" >&2; exit 1; }
+command -v jq >/dev/null || { echo "jq is required" >&2; exit 1; }
+
+(cd "$ROOT" && mvn -q -B -pl movie-service -am -Pfast-startup -DskipTests package)
+JAR=$(ls "$ROOT"/movie-service/target/fast-startup/*.jar)
+COMMON=(-Dspring.aot.enabled=false -Dspring.cloud.refresh.enabled=false -Deureka.client.register-with-eureka=false
+        -Deureka.client.fetch-registry=false -Dapp.warmup.enabled=false -Dapp.replication.enabled=false
+        -Dapp.grpc.concurrency-limit.enabled=false)
+
+# Threads and voluntary + involuntary context switches summed over every thread of the process
+threads() { ls "/proc/$1/task" | wc -l; }
+context_switches() {
+  cat /proc/"$1"/task/*/status 2>/dev/null | awk '/ctxt_switches/ {sum += $2} END {print sum}'
+}
+
+run_load() {
+  local pid=$1 call=$2 data=$3 peak=0 before after load
+  before=$(context_switches "$pid")
+  ghz --insecure --proto "$PROTO" --call "$call" -d "$data" -c "$CONCURRENCY" -n "$CALLS" \
+      --format json localhost:9090 >"$RESULT" &
+  load=$!
+  while kill -0 "$load" 2>/dev/null; do
+    peak=$(( $(threads "$pid") > peak ? $(threads "$pid") : peak ))
+    sleep 0.1
+  done
+  wait "$load" || true
+  after=$(context_switches "$pid")
+
+  jq -r --arg peak "$peak" --arg switches "$(( after - before ))" '
+    (.latencyDistribution // []) as $d
+    | def pct(p): ([$d[] | select(.percentage == p) | .latency][0] // 0) / 1e6;
+    [ (.rps | floor), pct(50), pct(99),
+      (100 * ((.count - (.statusCodeDistribution.OK // 0)) / .count)), ($peak | tonumber), ($switches | tonumber) ]
+    | "\(.[0]) calls/s   p50 \(.[1] | floor) ms   p99 \(.[2] | floor) ms   failed \(.[3] | floor)%   peak threads \(.[4])   context switches \(.[5])"
+  ' "$RESULT"
+}
+
+echo "movie-service, concurrency $CONCURRENCY, $CALLS calls, $(java -version 2>&1 | head -1)"
+for mode in bounded virtual direct; do
+  java "${COMMON[@]}" -Dapp.grpc.execution.mode="$mode" -jar "$JAR" >"$LOG" 2>&1 &
+  pid=$!
+  until grep -q "Started .* in" "$LOG"; do
+    kill -0 "$pid" 2>/dev/null || { echo "movie-service exited during startup, log:" >&2; cat "$LOG" >&2; exit 1; }
+    sleep 0.1
+  done
+
+  printf "%-8s %-26s " "$mode" "GetTrendingMovies"
+  run_load "$pid" movie.MovieService.GetTrendingMovies '{"limit":10}'
+  printf "%-8s %-26s " "$mode" "GetTrendingMoviesBatched"
+  run_load "$pid" movie.MovieService.GetTrendingMoviesBatched '{"request":{"limit":10}}'
+
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+done
@@ -0,0 +1,75 @@
+#!/usr/bin/env bash
+# Measures SearchMovies latency on a generated catalog.
+#
+# Usage: scripts/search-benchmark.sh [movies] [concurrency] [calls]
+#
+# Writes a CSV catalog of the given number of movies (default 100000) whose titles, directors and
+# descriptions are drawn from a small vocabulary, so common words and short prefixes match a large
+# share of the catalog. movie-service is started on it without sharding and each query below is
+# driven with ghz (https://ghz.sh) at the given concurrency (default 50) for the given number of
+# calls (default 20000), after a warm-up run of the same query. Prints calls/sec and p50/p99/p999.
+# The readme's type-ahead target is a p99 of a few milliseconds for every row.
+set -euo pipefail
+
+MOVIES=${1:-100000}
+CONCURRENCY=${2:-50}
+CALLS=${3:-20000}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+PROTO="$ROOT/movie-service/src/main/proto/movie_service.proto"
+CATALOG=$(mktemp --suffix=.csv)
+LOG=$(mktemp)
+RESULT=$(mktemp)
+trap 'rm -f "$CATALOG" "$LOG" "$RESULT"' EXIT
+
+command -v ghz >/dev/null || { echo "ghz is required, see https://ghz.sh" >&2; exit 1; }
+command -v jq >/dev/null || { echo "jq is required" >&2; exit 1; }
+
+# Word frequencies fall off with their position in the list, like in real titles
+awk -v n="$MOVIES" 'BEGIN {
+  srand(42)
+  split("the dark night love story last man city war house world girl life dead lost king secret return black star day time home road blood dream fire", words, " ")
+  split("christopher nolan martin scorsese greta gerwig david fincher sofia coppola ridley scott kathryn bigelow denis villeneuve", names, " ")
+  split("Drama Crime Action Sci-Fi Comedy Horror Romance Thriller", genres, " ")
+  print "id,title,description,rating,genre,year,director"
+  for (id = 1; id <= n; id++) {
+    title = ""; description = ""
+    for (w = 0; w < 3; w++) title = title (w ? " " : "") words[int(length(words) * rand() * rand()) + 1]
+    for (w = 0; w < 12; w++) description = description (w ? " " : "") words[int(length(words) * rand()) + 1]
+    director = names[2 * int(length(names) / 2 * rand()) + 1] " " names[2 * int(length(names) / 2 * rand()) + 2]
+    printf "%d,%s %d,%s,%.1f,%s,%d,%s\n", id, title, id, description, 1 + 9 * rand(), genres[int(length(genres) * rand()) + 1], 1950 + int(75 * rand()), director
+  }
+}' >"$CATALOG"
+
+(cd "$ROOT" && mvn -q -B -pl movie-service -am -Pfast-startup -DskipTests package)
+JAR=$(ls "$ROOT"/movie-service/target/fast-startup/*.jar)
+java -Dspring.aot.enabled=false -Dspring.cloud.refresh.enabled=false -Deureka.client.register-with-eureka=false \
+     -Deureka.client.fetch-registry=false -Dapp.warmup.enabled=false -Dapp.replication.enabled=false \
+     -Dapp.sharding.enabled=false -Dapp.grpc.concurrency-limit.enabled=false \
+     -Dapp.catalog.path="$CATALOG" -jar "$JAR" >"$LOG" 2>&1 &
+pid=$!
+trap 'kill "$pid" 2>/dev/null; rm -f "$CATALOG" "$LOG" "$RESULT"' EXIT
+until grep -q "Started .* in" "$LOG"; do
+  kill -0 "$pid" 2>/dev/null || { echo "movie-service exited during startup, log:" >&2; cat "$LOG" >&2; exit 1; }
+  sleep 0.1
+done
+
+run_query() {
+  local data
+  data=$(jq -cn --arg q "$1" '{query: $q, limit: 10}')
+  ghz --insecure --proto "$PROTO" --call movie.MovieService.SearchMovies -d "$data" -c "$CONCURRENCY" \
+      -n "$CALLS" localhost:9090 >/dev/null
+  ghz --insecure --proto "$PROTO" --call movie.MovieService.SearchMovies -d "$data" -c "$CONCURRENCY" \
+      -n "$CALLS" --format json localhost:9090 >"$RESULT"
+  jq -r '
+    (.latencyDistribution // []) as $d
+    | def pct(p): ([$d[] | select(.percentage == p) | .latency][0] // 0) / 1e6;
+    "\(.rps | floor) calls/s   p50 \(pct(50) * 100 | floor / 100) ms   p99 \(pct(99) * 100 | floor / 100) ms   p999 \(pct(99.9) * 100 | floor / 100) ms"
+  ' "$RESULT"
+}
+
+echo "movie-service search, $MOVIES movies, concurrency $CONCURRENCY, $CALLS calls, $(java -version 2>&1 | head -1)"
+# Common word, one-letter and two-letter prefixes, a rare word, a director, words spread over fields
+for query in "the" "d" "st" "fire" "christopher no" "dark love scott" "night 4242"; do
+  printf "%-18s " "\"$query\""
+  run_query "$query"
+done
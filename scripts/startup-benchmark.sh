@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+# Compares startup time and first-request latency of one module with and without the fast-startup build.
+#
+# Usage: scripts/startup-benchmark.sh <eureka-server|movie-service|user-service|api-gateway> [runs]
+#
+# Builds the module with -Pfast-startup, then starts the same extracted jar in four modes, each
+# measured over the given number of runs (default 5):
+#   baseline   no AOT, no application CDS archive (what the regular build runs)
+#   cds        application CDS archive only
+#   aot        Spring AOT initializers only
+#   cds+aot    both, the fast-startup configuration
+# Registration with Eureka and warm-up are switched off so runs do not depend on other services.
+# api-gateway's first request goes to movie-service (localhost:9090 fallback), start it beforehand.
+set -euo pipefail
+
+MODULE=${1:?module name required}
+RUNS=${2:-5}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+TARGET="$ROOT/$MODULE/target"
+LOG=$(mktemp)
+trap 'rm -f "$LOG"' EXIT
+
+case "$MODULE" in
+  eureka-server) FIRST_REQUEST=(curl -sf -o /dev/null http://localhost:8761/eureka/apps) ;;
+  movie-service) FIRST_REQUEST=(grpcurl -plaintext -proto "$ROOT/movie-service/src/main/proto/movie_service.proto"
+                   -d '{"movie_id":1}' localhost:9090 movie.MovieService.GetMovie) ;;
+  user-service)  FIRST_REQUEST=(grpcurl -plaintext -proto "$ROOT/user-service/src/main/proto/user_service.proto"
+                   -d '{"user_id":1}' localhost:9092 user.UserService.GetUserProfile) ;;
+  api-gateway)   FIRST_REQUEST=(curl -sf -o /dev/null http://localhost:8080/movies/1) ;;
+  *) echo "Unknown module $MODULE" >&2; exit 1 ;;
+esac
+
+(cd "$ROOT" && mvn -q -B -pl "$MODULE" -am -Pfast-startup -DskipTests package)
+JAR=$(ls "$TARGET"/fast-startup/*.jar)
+ARCHIVE="$TARGET/fast-startup/application.jsa"
+COMMON=(-Dspring.cloud.refresh.enabled=false -Deureka.client.register-with-eureka=false
+        -Deureka.client.fetch-registry=false -Dapp.warmup.enabled=false)
+
+millis() { date +%s%3N; }
+
+run_once() {
+  local -a flags=("$@")
+  local start pid started first
+  start=$(millis)
+  java "${flags[@]}" "${COMMON[@]}" -jar "$JAR" >"$LOG" 2>&1 &
+  pid=$!
+
+  until grep -q "Started .* in" "$LOG"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "$MODULE exited during startup, log:" >&2
+      cat "$LOG" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+  # "process running for" includes JVM boot, unlike the context-only "Started ... in"
+  started=$(grep -o "process running for [0-9.]*" "$LOG" | head -1 | awk '{print $4 * 1000}')
+
+  first=$(millis)
+  "${FIRST_REQUEST[@]}" >/dev/null
+  first=$(( $(millis) - first ))
+
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  echo "$started $first $(( $(millis) - start ))"
+}
+
+report() {
+  local mode=$1
+  shift
+  local total_start=0 total_first=0 result started first
+  for ((i = 0; i < RUNS; i++)); do
+    result=$(run_once "$@")
+    read -r started first _ <<<"$result"
+    total_start=$(awk -v a="$total_start" -v b="$started" 'BEGIN {print a + b}')
+    total_first=$(( total_first + first ))
+  done
+  printf "%-10s startup %8.0f ms   first request %6d ms   (mean of %d runs)\n" \
+    "$mode" "$(awk -v t="$total_start" -v n="$RUNS" 'BEGIN {print t / n}')" $(( total_first / RUNS )) "$RUNS"
+}
+
+echo "$MODULE, $(java -version 2>&1 | head -1)"
+report baseline -Xshare:auto -Dspring.aot.enabled=false
+report cds      -XX:SharedArchiveFile="$ARCHIVE" -Dspring.aot.enabled=false
+report aot      -Xshare:auto -Dspring.aot.enabled=true
+report cds+aot  -XX:SharedArchiveFile="$ARCHIVE" -Dspring.aot.enabled=true
@@ -4,7 +4,8 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 
-@SpringBootApplication
+// The shared gRPC execution, concurrency-limit and warm-up beans live in the common module
+@SpringBootApplication(scanBasePackages = {"com.example.movie.userservice", "com.example.movie.common"})
 @EnableDiscoveryClient
 public class UserServiceApplication {
     public static void main(String[] args) {
@@ -1,9 +1,23 @@
 package com.example.movie.userservice.service;
 
+import com.example.movie.common.batch.BatchBudget;
+import com.example.movie.common.batch.StringDictionary;
+import com.example.movie.movieservice.proto.MovieRecommendation;
+import com.example.movie.movieservice.proto.UpdateRatingRequest;
+import com.example.movie.movieservice.proto.UserEventRequest;
 import com.example.movie.userservice.model.*;
 import com.example.movie.userservice.proto.*;
 import com.example.movie.userservice.proto.UserActivityEvent;
 import com.example.movie.userservice.repository.UserRepository;
+import com.example.movie.userservice.sharding.ShardedMovieServiceClient;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.protobuf.CodedOutputStream;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +26,7 @@ import org.springframework.grpc.server.service.GrpcService;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
@@ -19,12 +34,17 @@ import java.util.function.Consumer;
 @GrpcService
 public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
 
+    private static final int RECOMMENDATION_LIMIT = 5;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
     private final UserRepository userRepository;
+    private final ShardedMovieServiceClient movieServiceClient;
     private final ConcurrentHashMap<Integer, List<StreamObserver<UserInsightResponse>>> activeUserStreams = new ConcurrentHashMap<>();
 
     @Autowired
-    public UserGrpcService(UserRepository userRepository) {
+    public UserGrpcService(UserRepository userRepository, ShardedMovieServiceClient movieServiceClient) {
         this.userRepository = userRepository;
+        this.movieServiceClient = movieServiceClient;
     }
 
     // Unary RPC: Fetches user profile details
@@ -47,7 +67,7 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
             responseObserver.onCompleted();
         } else {
             // Handle case when user not found
-            responseObserver.onError(new RuntimeException("User with ID " + userId + " not found"));
+            responseObserver.onError(Status.NOT_FOUND.withDescription("User with ID " + userId + " not found").asRuntimeException());
         }
     }
 
@@ -61,33 +81,12 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
         List<UserActivity> activities = userRepository.getUserActivities(userId, limit, sinceTimestamp);
 
         for (UserActivity activity : activities) {
-            UserActivityResponse.ActivityType activityType;
-            switch (activity.getActivityType()) {
-                case VIEW:
-                    activityType = UserActivityResponse.ActivityType.VIEW;
-                    break;
-                case RATE:
-                    activityType = UserActivityResponse.ActivityType.RATE;
-                    break;
-                case BOOKMARK:
-                    activityType = UserActivityResponse.ActivityType.BOOKMARK;
-                    break;
-                case WATCH:
-                    activityType = UserActivityResponse.ActivityType.WATCH;
-                    break;
-                case SHARE:
-                    activityType = UserActivityResponse.ActivityType.SHARE;
-                    break;
-                default:
-                    activityType = UserActivityResponse.ActivityType.VIEW;
-            }
-
             UserActivityResponse response = UserActivityResponse.newBuilder()
                     .setActivityId(activity.getId())
                     .setUserId(activity.getUserId())
                     .setMovieId(activity.getMovieId())
                     .setMovieTitle(activity.getMovieTitle())
-                    .setActivityType(activityType)
+                    .setActivityType(toProtoActivityType(activity))
                     .setTimestamp(activity.getTimestamp())
                     .build();
 
@@ -96,6 +95,62 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    // Server Streaming RPC: Same rows as GetUserActivityHistory, packed into byte-budgeted batches
+    @Override
+    public void getUserActivityHistoryBatched(BatchedUserHistoryRequest request, StreamObserver<UserActivityBatch> responseObserver) {
+        UserHistoryRequest query = request.getRequest();
+        List<UserActivity> activities = userRepository.getUserActivities(query.getUserId(), query.getLimit(), query.getSinceTimestamp());
+
+        ServerCallStreamObserver<UserActivityBatch> serverObserver = (ServerCallStreamObserver<UserActivityBatch>) responseObserver;
+        if (request.getGzip()) {
+            serverObserver.setCompression("gzip");
+        }
+
+        BatchBudget budget = new BatchBudget(request.getMaxBatchBytes());
+        StringDictionary dictionary = new StringDictionary();
+        UserActivityBatch.Builder batch = UserActivityBatch.newBuilder().setUserId(query.getUserId());
+        int rowBytes = 0;
+        long previousTimestamp = 0;
+
+        for (UserActivity activity : activities) {
+            PackedUserActivity row = PackedUserActivity.newBuilder()
+                    .setActivityId(activity.getId())
+                    .setMovieId(activity.getMovieId())
+                    .setMovieTitleRef(dictionary.ref(activity.getMovieTitle()))
+                    .setActivityType(toProtoActivityType(activity))
+                    .setTimestampDelta(activity.getTimestamp() - previousTimestamp)
+                    .build();
+            previousTimestamp = activity.getTimestamp();
+            batch.addActivities(row);
+            rowBytes += CodedOutputStream.computeMessageSize(3, row);
+
+            if (budget.isFull(rowBytes + dictionary.unsentBytes())) {
+                if (serverObserver.isCancelled()) {
+                    return;
+                }
+                responseObserver.onNext(batch.addAllNewStrings(dictionary.drainUnsent()).build());
+                batch.clearActivities().clearNewStrings();
+                rowBytes = 0;
+                budget.grow();
+            }
+        }
+
+        if (batch.getActivitiesCount() > 0) {
+            responseObserver.onNext(batch.addAllNewStrings(dictionary.drainUnsent()).build());
+        }
+        responseObserver.onCompleted();
+    }
+
+    private UserActivityResponse.ActivityType toProtoActivityType(UserActivity activity) {
+        return switch (activity.getActivityType()) {
+            case RATE -> UserActivityResponse.ActivityType.RATE;
+            case BOOKMARK -> UserActivityResponse.ActivityType.BOOKMARK;
+            case WATCH -> UserActivityResponse.ActivityType.WATCH;
+            case SHARE -> UserActivityResponse.ActivityType.SHARE;
+            default -> UserActivityResponse.ActivityType.VIEW;
+        };
+    }
+
     // Client Streaming RPC: Allows updating user preferences in batches
     @Override
     public StreamObserver<UserPreferenceRequest> updateUserPreferences(StreamObserver<UpdatePreferencesResponse> responseObserver) {
@@ -146,6 +201,8 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
     public StreamObserver<UserActivityEvent> trackUserActivity(StreamObserver<UserInsightResponse> responseObserver) {
         return new StreamObserver<UserActivityEvent>() {
             private int userId = -1;
+            // Forwarded events answer on gRPC callback threads, so every send goes through this lock
+            private boolean completed;
 
             @Override
             public void onNext(UserActivityEvent event) {
@@ -192,20 +249,34 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
                         .build();
 
                 // Process the event and generate insights (in a real system, this might involve ML models)
-                generateInsights(modelEvent, insightResponse -> {
-                    responseObserver.onNext(insightResponse);
-                });
+                generateInsights(modelEvent, this::send);
+                forwardToMovieService(modelEvent, this::send);
+            }
+
+            // Insights from movie-service that arrive after the client finished are dropped
+            private void send(UserInsightResponse insight) {
+                synchronized (this) {
+                    if (!completed) {
+                        responseObserver.onNext(insight);
+                    }
+                }
             }
 
             @Override
             public void onError(Throwable t) {
                 System.err.println("Error tracking user activity: " + t.getMessage());
+                synchronized (this) {
+                    completed = true;
+                }
                 cleanup();
             }
 
             @Override
             public void onCompleted() {
-                responseObserver.onCompleted();
+                synchronized (this) {
+                    completed = true;
+                    responseObserver.onCompleted();
+                }
                 cleanup();
             }
 
@@ -223,6 +294,86 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
         };
     }
 
+    // Ratings, plays and clicks on a movie (event data {"movie_id": 1, "rating": 8.5}) go to the movie's
+    // shard through the sharded client, and the shards' merged recommendations come back as an insight.
+    // The calls run asynchronously under the client's deadline, so the handler thread never waits on movie-service.
+    private void forwardToMovieService(com.example.movie.userservice.model.UserActivityEvent event, Consumer<UserInsightResponse> insightConsumer) {
+        UserEventRequest.EventType movieEvent = switch (event.getEventType()) {
+            case RATE -> UserEventRequest.EventType.RATE;
+            case PLAY, FINISH -> UserEventRequest.EventType.WATCH;
+            case CLICK -> UserEventRequest.EventType.VIEW;
+            default -> null;
+        };
+        if (movieEvent == null) {
+            return;
+        }
+
+        JsonNode data;
+        try {
+            data = JSON.readTree(event.getEventData());
+        } catch (JsonProcessingException e) {
+            log.debug("Activity of user {} has no JSON event data: {}", event.getUserId(), e.getMessage());
+            return;
+        }
+        JsonNode movieId = data.path("movie_id");
+        if (!movieId.canConvertToInt()) {
+            return;
+        }
+
+        UserEventRequest movieRequest = UserEventRequest.newBuilder()
+                .setUserId(event.getUserId())
+                .setMovieId(movieId.asInt())
+                .setEventType(movieEvent)
+                .build();
+        try {
+            // The rating is applied before asking for recommendations, so the owner's answer reflects it
+            CompletableFuture<Void> rated = CompletableFuture.completedFuture(null);
+            if (movieEvent == UserEventRequest.EventType.RATE && data.path("rating").isNumber()) {
+                rated = movieServiceClient.updateMovieRatings(List.of(
+                        UpdateRatingRequest.newBuilder()
+                                .setMovieId(movieId.asInt())
+                                .setUserId(event.getUserId())
+                                .setRating(data.path("rating").floatValue())
+                                .build())).thenAccept(updates -> {
+                    if (!updates.failed().isEmpty()) {
+                        log.warn("Rating of movie {} by user {} was not applied", movieId.asInt(), event.getUserId());
+                    }
+                });
+            }
+
+            rated.thenCompose(ignored -> movieServiceClient.getRecommendations(movieRequest, RECOMMENDATION_LIMIT))
+                    .thenAccept(recommendations -> sendRecommendations(event.getUserId(), recommendations, insightConsumer))
+                    .exceptionally(e -> {
+                        log.warn("Could not forward activity of user {} to movie-service: {}", event.getUserId(), e.getMessage());
+                        return null;
+                    });
+        } catch (RuntimeException e) {
+            // movie-service being unavailable must not end the user's activity stream
+            log.warn("Could not forward activity of user {} to movie-service: {}", event.getUserId(), e.getMessage());
+        }
+    }
+
+    private void sendRecommendations(int userId, List<MovieRecommendation> recommendations, Consumer<UserInsightResponse> insightConsumer) {
+        if (recommendations.isEmpty()) {
+            return;
+        }
+
+        ObjectNode insight = JSON.createObjectNode();
+        ArrayNode movies = insight.putArray("movies");
+        for (MovieRecommendation recommendation : recommendations) {
+            movies.addObject()
+                    .put("movie_id", recommendation.getMovieId())
+                    .put("title", recommendation.getTitle())
+                    .put("reason", recommendation.getRecommendationReason());
+        }
+        insightConsumer.accept(UserInsightResponse.newBuilder()
+                .setUserId(userId)
+                .setInsightType("recommendations")
+                .setInsightData(insight.toString())
+                .setConfidenceScore(recommendations.get(0).getConfidenceScore())
+                .build());
+    }
+
     // In a real implementation, this would use ML models or analytics to generate insights
     private void generateInsights(com.example.movie.userservice.model.UserActivityEvent event, Consumer<UserInsightResponse> insightConsumer) {
         // For demo purposes, generate a simple insight based on the event
@@ -0,0 +1,285 @@
+package com.example.movie.userservice.sharding;
+
+import com.example.movie.common.sharding.ConsistentHashRing;
+import com.example.movie.movieservice.proto.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * movie-service client that routes by movie id. Each movie-service instance owns the part of the
+ * consistent-hash ring given by its Eureka metadata: point reads, rating updates and interaction
+ * events go to the owner, trending and recommendation queries go to every shard and their top-K
+ * results are merged by the score the shards return.
+ */
+@Slf4j
+public class ShardedMovieServiceClient {
+
+    private static final String SERVICE_ID = "movie-service";
+    private static final String VIRTUAL_NODES_METADATA = "shard.virtual-nodes";
+    private static final int DEFAULT_VIRTUAL_NODES = 128;
+    private static final long DEADLINE_SECONDS = 5;
+
+    // Ratings the owning shards applied, and the ones whose shard failed and may be sent again
+    public record RatingUpdates(int updatedCount, List<UpdateRatingRequest> failed) {
+    }
+
+    private final DiscoveryClient discoveryClient;
+
+    // Ring of instance addresses (host:port) and the channel to each of them
+    private volatile ConsistentHashRing<String> ring = ConsistentHashRing.empty();
+    private final Map<String, ManagedChannel> channels = new ConcurrentHashMap<>();
+
+    public ShardedMovieServiceClient(DiscoveryClient discoveryClient) {
+        this.discoveryClient = discoveryClient;
+        rebuildRing();
+    }
+
+    public MovieResponse getMovie(int movieId) {
+        return MovieServiceGrpc.newBlockingStub(channelFor(movieId))
+                .withDeadlineAfter(DEADLINE_SECONDS, TimeUnit.SECONDS)
+                .getMovie(MovieRequest.newBuilder().setMovieId(movieId).build());
+    }
+
+    // Splits the batch by owning shard and streams each part to its owner in parallel. A failing shard
+    // only fails its own part: the others have applied theirs by then, so the caller gets the failed
+    // ratings back to retry. Ratings are last-writer-wins per user, so sending one again is harmless.
+    // Completes on a gRPC callback thread once every shard has answered or run into its deadline.
+    public CompletableFuture<RatingUpdates> updateMovieRatings(List<UpdateRatingRequest> ratings) {
+        ConsistentHashRing<String> current = ring;
+        Map<String, List<UpdateRatingRequest>> byShard = ratings.stream()
+                .collect(Collectors.groupingBy(rating -> current.nodeFor(rating.getMovieId())));
+
+        Map<String, CompletableFuture<UpdateRatingBatchResponse>> responses = new HashMap<>();
+        byShard.forEach((address, shardRatings) -> {
+            CompletableFuture<UpdateRatingBatchResponse> response = new CompletableFuture<>();
+            try {
+                StreamObserver<UpdateRatingRequest> requestStream = asyncStub(address)
+                        .updateMovieRatings(singleResponse(response));
+                shardRatings.forEach(requestStream::onNext);
+                requestStream.onCompleted();
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+            responses.put(address, response);
+        });
+
+        return CompletableFuture.allOf(responses.values().toArray(CompletableFuture[]::new)).handle((ignored, error) -> {
+            int updated = 0;
+            List<UpdateRatingRequest> failed = new ArrayList<>();
+            for (Map.Entry<String, CompletableFuture<UpdateRatingBatchResponse>> response : responses.entrySet()) {
+                try {
+                    updated += response.getValue().join().getUpdatedCount();
+                } catch (RuntimeException e) {
+                    log.warn("Shard {} did not apply {} ratings: {}", response.getKey(),
+                            byShard.get(response.getKey()).size(), e.getMessage());
+                    failed.addAll(byShard.get(response.getKey()));
+                }
+            }
+            return new RatingUpdates(updated, failed);
+        });
+    }
+
+    // Every shard returns its own top-K, the merged list is cut back to K
+    public List<MovieResponse> getTrendingMovies(int limit, String genre) {
+        TrendingMoviesRequest request = TrendingMoviesRequest.newBuilder()
+                .setLimit(limit)
+                .setGenre(genre == null ? "" : genre)
+                .build();
+
+        List<CompletableFuture<List<MovieResponse>>> partials = ring.nodes().stream()
+                .map(address -> {
+                    CompletableFuture<List<MovieResponse>> partial = new CompletableFuture<>();
+                    asyncStub(address).getTrendingMovies(request, collecting(partial));
+                    return partial;
+                })
+                .toList();
+
+        return gatherTopK(partials, limit, MovieResponse::getMovieId,
+                Comparator.comparing(MovieResponse::getScore).reversed());
+    }
+
+    // Only the movie's owner records the event, the other shards recommend from the movie's genre.
+    // Nothing blocks: the genre lookup and the scatter run on gRPC callback threads.
+    public CompletableFuture<List<MovieRecommendation>> getRecommendations(UserEventRequest event, int limit) {
+        ConsistentHashRing<String> current = ring;
+        String owner = current.nodeFor(event.getMovieId());
+        return genreOf(event, owner).thenCompose(genre -> scatterRecommendations(current, owner, event,
+                event.toBuilder().setRecommendOnly(true).setGenre(genre).build(), limit));
+    }
+
+    private CompletableFuture<String> genreOf(UserEventRequest event, String owner) {
+        if (!event.getGenre().isEmpty()) {
+            return CompletableFuture.completedFuture(event.getGenre());
+        }
+        CompletableFuture<MovieResponse> movie = new CompletableFuture<>();
+        try {
+            asyncStub(owner).getMovie(MovieRequest.newBuilder().setMovieId(event.getMovieId()).build(), singleResponse(movie));
+        } catch (RuntimeException e) {
+            movie.completeExceptionally(e);
+        }
+        return movie.thenApply(MovieResponse::getGenre).exceptionally(e -> {
+            log.debug("Could not look up the genre of movie {}: {}", event.getMovieId(), e.getMessage());
+            return "";
+        });
+    }
+
+    private CompletableFuture<List<MovieRecommendation>> scatterRecommendations(ConsistentHashRing<String> current, String owner,
+                                                                               UserEventRequest event, UserEventRequest recommendOnly,
+                                                                               int limit) {
+        List<CompletableFuture<List<MovieRecommendation>>> partials = current.nodes().stream()
+                .map(address -> {
+                    CompletableFuture<List<MovieRecommendation>> partial = new CompletableFuture<>();
+                    try {
+                        StreamObserver<UserEventRequest> events = asyncStub(address)
+                                .getPersonalizedRecommendations(collecting(partial));
+                        events.onNext(address.equals(owner) ? event : recommendOnly);
+                        events.onCompleted();
+                    } catch (RuntimeException e) {
+                        partial.completeExceptionally(e);
+                    }
+                    return partial;
+                })
+                .toList();
+
+        return CompletableFuture.allOf(partials.toArray(CompletableFuture[]::new)).handle((ignored, error) ->
+                gatherTopK(partials, limit, MovieRecommendation::getMovieId,
+                        Comparator.comparing(MovieRecommendation::getConfidenceScore).reversed()));
+    }
+
+    private <T> List<T> gatherTopK(List<CompletableFuture<List<T>>> partials, int limit,
+                                   ToIntFunction<T> movieId, Comparator<T> order) {
+        Map<Integer, T> merged = new HashMap<>();
+        for (CompletableFuture<List<T>> partial : partials) {
+            try {
+                partial.join().forEach(item -> merged.merge(movieId.applyAsInt(item), item,
+                        (a, b) -> order.compare(a, b) <= 0 ? a : b));
+            } catch (RuntimeException e) {
+                // A missing shard degrades the result instead of failing it
+                log.warn("Shard did not answer scatter query: {}", e.getMessage());
+            }
+        }
+        return merged.values().stream().sorted(order).limit(limit).toList();
+    }
+
+    // Rebuilds the ring whenever Eureka refreshes its registry, instances that left are disconnected
+    @EventListener(HeartbeatEvent.class)
+    public void rebuildRing() {
+        List<ServiceInstance> instances = discoveryClient.getInstances(SERVICE_ID);
+
+        Map<String, String> nodes = new HashMap<>();
+        Map<String, Integer> virtualNodes = new HashMap<>();
+        for (ServiceInstance instance : instances) {
+            String grpcPort = instance.getMetadata().get("gRPC.port");
+            String address = instance.getHost() + ":" + (grpcPort != null ? grpcPort : "9090");
+            String shardNodes = instance.getMetadata().get(VIRTUAL_NODES_METADATA);
+
+            nodes.put(instance.getInstanceId(), address);
+            virtualNodes.put(instance.getInstanceId(),
+                    shardNodes != null ? Integer.parseInt(shardNodes) : DEFAULT_VIRTUAL_NODES);
+        }
+
+        if (nodes.isEmpty()) {
+            log.warn("No instances of movie-service found in Eureka. Using localhost:9090 as the only shard.");
+            nodes.put("default", "localhost:9090");
+        }
+
+        ConsistentHashRing<String> rebuilt = ConsistentHashRing.of(nodes, virtualNodes);
+        if (!new HashSet<>(rebuilt.nodes()).equals(new HashSet<>(ring.nodes()))) {
+            log.info("movie-service shards changed to {}", rebuilt.nodes());
+        }
+        ring = rebuilt;
+
+        Set<String> live = new HashSet<>(rebuilt.nodes());
+        channels.entrySet().removeIf(entry -> {
+            if (live.contains(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().shutdown();
+            return true;
+        });
+    }
+
+    private ManagedChannel channelFor(int movieId) {
+        return channel(ring.nodeFor(movieId));
+    }
+
+    private MovieServiceGrpc.MovieServiceStub asyncStub(String address) {
+        return MovieServiceGrpc.newStub(channel(address)).withDeadlineAfter(DEADLINE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private ManagedChannel channel(String address) {
+        return channels.computeIfAbsent(address, key -> {
+            log.info("Creating gRPC channel to movie-service shard at {}", key);
+            int separator = key.lastIndexOf(':');
+            return ManagedChannelBuilder.forAddress(key.substring(0, separator), Integer.parseInt(key.substring(separator + 1)))
+                    .usePlaintext()
+                    .build();
+        });
+    }
+
+    private static <T> StreamObserver<T> collecting(CompletableFuture<List<T>> result) {
+        return new StreamObserver<>() {
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onNext(T value) {
+                items.add(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                result.complete(items);
+            }
+        };
+    }
+
+    private static <T> StreamObserver<T> singleResponse(CompletableFuture<T> result) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+
+    @PreDestroy
+    public void close() {
+        channels.forEach((address, channel) -> {
+            log.info("Shutting down gRPC channel to movie-service shard at {}", address);
+            try {
+                channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                log.warn("Error shutting down gRPC channel: {}", e.getMessage());
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.movie.userservice.warmup;
+
+import com.example.movie.common.warmup.NoopServerCallStreamObserver;
+import com.example.movie.common.warmup.WarmupWorkload;
+import com.example.movie.userservice.proto.BatchedUserHistoryRequest;
+import com.example.movie.userservice.proto.UserHistoryRequest;
+import com.example.movie.userservice.proto.UserRequest;
+import com.example.movie.userservice.repository.UserRepository;
+import com.example.movie.userservice.service.UserGrpcService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-only calls through UserGrpcService and UserRepository. The streaming RPCs that record
+ * activity or call movie-service are left out, they would change state or load another service.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserServiceWarmupWorkload implements WarmupWorkload {
+
+    // Ids of the sample users, unknown ids still exercise the NOT_FOUND path
+    private static final int[] USER_IDS = {1, 2, 3};
+
+    private final UserGrpcService userService;
+    private final UserRepository userRepository;
+
+    @Override
+    public void runRound() {
+        for (int userId : USER_IDS) {
+            userService.getUserProfile(UserRequest.newBuilder().setUserId(userId).build(),
+                    new NoopServerCallStreamObserver<>());
+
+            UserHistoryRequest history = UserHistoryRequest.newBuilder().setUserId(userId).setLimit(20).build();
+            userService.getUserActivityHistory(history, new NoopServerCallStreamObserver<>());
+            userService.getUserActivityHistoryBatched(BatchedUserHistoryRequest.newBuilder().setRequest(history).build(),
+                    new NoopServerCallStreamObserver<>());
+
+            userRepository.getUserPreferences(userId);
+        }
+    }
+}